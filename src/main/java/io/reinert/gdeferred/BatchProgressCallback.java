@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred;
+
+import java.util.List;
+
+/**
+ * Progress callback receiving the values notified together in a single call.
+ * <p>
+ * Values notified one at a time are still delivered through {@link #onProgress(Object)}.
+ *
+ * @param <P> The type of progress object
+ *
+ * @see Deferred#notifyBatch(Iterable)
+ */
+public interface BatchProgressCallback<P> extends ProgressCallback<P> {
+
+    /**
+     * Receives the values of a bulk notification, in order.
+     *
+     * @param progress the progress values; must not be modified
+     */
+    void onProgressBatch(List<P> progress);
+}
@@ -57,6 +57,20 @@ public interface Deferred<D, F, P> extends Promise<D, F, P> {
      */
     Deferred<D, F, P> notify(final P progress);
 
+    /**
+     * Notifies many progress values at once, as if {@link #notify(Object)} were called for each of them.
+     * <p>
+     * The state is checked once and each callback is visited once for the whole batch. Callbacks implementing
+     * {@link BatchProgressCallback} receive the batch in a single call.
+     * <p>
+     * The values are copied before returning, so the caller may reuse its collection right away.
+     *
+     * @param progress the progress values
+     *
+     * @return The current deferred object
+     */
+    Deferred<D, F, P> notifyBatch(Iterable<P> progress);
+
     /**
      * Return an {@link Promise} instance (i.e., an observer).  You can register callbacks in this observer.
      *
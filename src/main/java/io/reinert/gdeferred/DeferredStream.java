@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred;
+
+/**
+ * Deferred emitting a sequence of items, and then completing or failing.
+ * <p>
+ * Items emitted beyond the subscriber's demand are kept in a bounded buffer. When the buffer is full,
+ * {@link #emit(Object)} refuses the item, and the producer should wait for the next demand signal.
+ *
+ * <pre>
+ * <code>
+ * final DeferredStream&lt;Chunk, Exception&gt; stream = new DeferredStreamObject&lt;Chunk, Exception&gt;(16);
+ * stream.onDemand(new Runnable() {
+ *   public void run() {
+ *     while (source.hasNext() &amp;&amp; stream.emit(source.peek())) source.next();
+ *     if (!source.hasNext()) stream.complete();
+ *   }
+ * });
+ * </code>
+ * </pre>
+ *
+ * @param <T> Type of the items
+ * @param <F> Type of the failure
+ *
+ * @see io.reinert.gdeferred.impl.DeferredStreamObject
+ */
+public interface DeferredStream<T, F> extends StreamPromise<T, F> {
+
+    /**
+     * Delivers the item to the subscriber if it has demand, or buffers it otherwise.
+     *
+     * @param item the item
+     *
+     * @return {@code true} if the item was accepted, {@code false} if the buffer is full or the stream was cancelled
+     *
+     * @throws IllegalStateException if the stream has already completed or failed
+     */
+    boolean emit(T item);
+
+    /**
+     * Ends the stream. The subscriber is notified once the buffered items are delivered.
+     *
+     * @return this stream
+     */
+    DeferredStream<T, F> complete();
+
+    /**
+     * Fails the stream. Buffered items are discarded and the subscriber is notified immediately.
+     *
+     * @param reason the failure
+     *
+     * @return this stream
+     */
+    DeferredStream<T, F> reject(F reason);
+
+    /**
+     * Registers a callback executed every time the subscriber requests more items.
+     *
+     * @param callback the callback
+     *
+     * @return this stream
+     */
+    DeferredStream<T, F> onDemand(Runnable callback);
+
+    /**
+     * Return a {@link StreamPromise} instance (i.e., a consumer view).
+     *
+     * @return current stream as stream promise
+     */
+    StreamPromise<T, F> promise();
+}
@@ -18,7 +18,42 @@ package io.reinert.gdeferred;
 
 import com.google.gwt.core.client.EntryPoint;
 
+import io.reinert.gdeferred.impl.DeferredObject;
+
+/**
+ * Uses callbacks, filters and pipes, so the compile report measures the whole API.
+ */
 class ForceCompilationEntryPoint implements EntryPoint {
     public void onModuleLoad() {
+        final Deferred<String, String, Integer> deferred = new DeferredObject<String, String, Integer>();
+        deferred.then(new DoneFilter<String, Integer>() {
+            @Override
+            public Integer filterDone(String result) {
+                return result.length();
+            }
+        }).then(new DonePipe<Integer, String, String, Integer>() {
+            @Override
+            public Promise<String, String, Integer> pipeDone(Integer result) {
+                return new DeferredObject<String, String, Integer>().resolve(String.valueOf(result));
+            }
+        }).then(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+            }
+        }, new FailCallback<String>() {
+            @Override
+            public void onFail(String result) {
+            }
+        }, new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer progress) {
+            }
+        }).always(new AlwaysCallback<String, String>() {
+            @Override
+            public void onAlways(Promise.State state, String resolved, String rejected) {
+            }
+        });
+        deferred.notify(100);
+        deferred.resolve("done");
     }
 }
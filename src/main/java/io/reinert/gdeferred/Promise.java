@@ -188,6 +188,9 @@ public interface Promise<D, F, P> {
      * <p>
      * You can register multiple {@link ProgressCallback} by calling the method multiple times. The order of callback
      * trigger is based on the order you call this method.
+     * <p>
+     * If progress has already been notified, the callback immediately receives the latest progress value (or the
+     * latest values, as configured in the deferred).
      * 
      * <pre>
      * <code>
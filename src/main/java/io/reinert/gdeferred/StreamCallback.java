@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred;
+
+/**
+ * Callback receiving the items of a stream and then its completion or failure.
+ *
+ * @param <T> Type of the items
+ * @param <F> Type of the failure
+ *
+ * @see StreamPromise#subscribe(StreamCallback)
+ */
+public interface StreamCallback<T, F> {
+
+    void onItem(T item);
+
+    void onComplete();
+
+    void onFail(F reason);
+}
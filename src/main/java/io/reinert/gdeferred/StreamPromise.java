@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred;
+
+/**
+ * Consumer view of a {@link DeferredStream}: a sequence of items followed by completion or failure.
+ * <p>
+ * Items are pulled: the subscriber receives only as many items as it has requested through its
+ * {@link StreamSubscription}. Operators process the items one by one, as they arrive.
+ *
+ * <pre>
+ * <code>
+ * stream.filter(new DoneFilter&lt;Chunk, Boolean&gt;() { ... })
+ *       .map(new DoneFilter&lt;Chunk, Integer&gt;() { ... })
+ *       .fold(0, new Accumulator&lt;Integer, Integer&gt;() {
+ *         public Integer accumulate(Integer sum, Integer size) {
+ *           return sum + size;
+ *         }
+ *       }).done(...);
+ * </code>
+ * </pre>
+ *
+ * @param <T> Type of the items
+ * @param <F> Type of the failure
+ */
+public interface StreamPromise<T, F> {
+
+    /**
+     * Registers the single subscriber of this stream. No item is delivered until it requests some.
+     *
+     * @param callback the subscriber
+     *
+     * @return the subscription to request items or cancel
+     *
+     * @throws IllegalStateException if the stream already has a subscriber
+     */
+    StreamSubscription subscribe(StreamCallback<T, F> callback);
+
+    /**
+     * Creates a stream with each item transformed by the filter.
+     *
+     * @param filter    the item transformation
+     * @param <T_OUT>   the output item type
+     *
+     * @return the mapped stream
+     */
+    <T_OUT> StreamPromise<T_OUT, F> map(DoneFilter<T, T_OUT> filter);
+
+    /**
+     * Creates a stream with only the items for which the predicate returns {@code true}.
+     *
+     * @param predicate the item predicate
+     *
+     * @return the filtered stream
+     */
+    StreamPromise<T, F> filter(DoneFilter<T, Boolean> predicate);
+
+    /**
+     * Subscribes to the stream and folds its items as they arrive, without keeping them.
+     * <p>
+     * The returned promise is resolved with the accumulated value when the stream completes, or rejected when it
+     * fails. The number of items folded is notified as progress.
+     *
+     * @param seed          the initial accumulated value
+     * @param accumulator   the fold function
+     * @param <R>           the accumulated type
+     *
+     * @return a promise of the accumulated value
+     */
+    <R> Promise<R, F, Long> fold(R seed, Accumulator<R, T> accumulator);
+}
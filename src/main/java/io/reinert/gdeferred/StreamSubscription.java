@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred;
+
+/**
+ * Link between a stream and its subscriber, used to signal demand.
+ *
+ * @see StreamPromise#subscribe(StreamCallback)
+ */
+public interface StreamSubscription {
+
+    /**
+     * Allows the stream to deliver {@code n} more items to the subscriber.
+     *
+     * @param n the number of items, must be positive
+     */
+    void request(long n);
+
+    /**
+     * Stops the delivery of items. Buffered items are discarded.
+     */
+    void cancel();
+}
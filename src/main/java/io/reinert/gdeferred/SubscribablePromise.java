@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred;
+
+/**
+ * Promise whose callbacks can be registered with a handle to remove them later.
+ * <p>
+ * Kept apart from {@link Promise}, so that existing implementations of that interface are not broken. Every promise
+ * of the library implements it.
+ *
+ * @param <D> Type used for {@link #subscribeDone(DoneCallback)}
+ * @param <F> Type used for {@link #subscribeFail(FailCallback)}
+ * @param <P> Type used for {@link #subscribeProgress(ProgressCallback)}
+ */
+public interface SubscribablePromise<D, F, P> extends Promise<D, F, P> {
+
+    /**
+     * Same as {@link Promise#always(AlwaysCallback)}, but returns a handle to remove the callback later.
+     *
+     * @param callback the callback to be executed when the promise is done or failed
+     *
+     * @return the subscription of the callback
+     */
+    Subscription subscribeAlways(AlwaysCallback<D, F> callback);
+
+    /**
+     * Same as {@link Promise#done(DoneCallback)}, but returns a handle to remove the callback later.
+     * <p>
+     * Components that go away before a long-lived promise settles should unsubscribe, so that the promise does not
+     * keep them reachable.
+     *
+     * <pre>
+     * <code>
+     * Subscription subscription = promise.subscribeDone(new DoneCallback(){ ... });
+     * ...
+     * // when the component is disposed
+     * subscription.unsubscribe();
+     * </code>
+     * </pre>
+     *
+     * @param callback the callback to be executed when the promise is done
+     *
+     * @return the subscription of the callback
+     */
+    Subscription subscribeDone(DoneCallback<D> callback);
+
+    /**
+     * Same as {@link Promise#fail(FailCallback)}, but returns a handle to remove the callback later.
+     *
+     * @param callback the callback to be executed when the promise has failed
+     *
+     * @return the subscription of the callback
+     */
+    Subscription subscribeFail(FailCallback<F> callback);
+
+    /**
+     * Same as {@link Promise#progress(ProgressCallback)}, but returns a handle to remove the callback later.
+     *
+     * @param callback the callback to be executed when the promise notifies progress
+     *
+     * @return the subscription of the callback
+     */
+    Subscription subscribeProgress(ProgressCallback<P> callback);
+}
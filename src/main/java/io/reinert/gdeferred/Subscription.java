@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred;
+
+/**
+ * Handle of a callback registered in a {@link SubscribablePromise}, used to remove it.
+ *
+ * @see SubscribablePromise#subscribeDone(DoneCallback)
+ */
+public interface Subscription {
+
+    /**
+     * Removes the callback from the promise, so that it is not called anymore and can be collected.
+     * <p>
+     * Takes constant time and may be called while the promise is running its callbacks. Calling it again does nothing.
+     */
+    void unsubscribe();
+
+    /**
+     * Checks whether the callback is still registered.
+     *
+     * @return {@code true} if not unsubscribed yet, {@code false} otherwise
+     */
+    boolean isSubscribed();
+}
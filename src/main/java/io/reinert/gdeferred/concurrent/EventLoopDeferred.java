@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.BatchProgressCallback;
+import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.impl.DeferredObject;
+
+/**
+ * Deferred whose callbacks run on an event loop.
+ * <p>
+ * Every callback invocation is queued in the {@link EventLoopDispatcher} instead of running inside
+ * {@link #resolve(Object)}. When resolved, rejected or notified from another thread, the operation itself is
+ * marshalled onto the loop, so the state only changes on the loop thread. So is the rejection by a deadline.
+ * Callbacks should be registered from the loop thread.
+ *
+ * @param <D> type of DoneCallback
+ * @param <F> type of FailCallback
+ * @param <P> type of ProgressCallback
+ */
+public class EventLoopDeferred<D, F, P> extends DeferredObject<D, F, P> {
+
+    private final EventLoopDispatcher dispatcher;
+
+    public EventLoopDeferred(EventLoopDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public Deferred<D, F, P> notify(final P progress) {
+        if (dispatcher.inLoop()) {
+            return super.notify(progress);
+        }
+
+        dispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                EventLoopDeferred.super.notify(progress);
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Deferred<D, F, P> notifyBatch(Iterable<P> progress) {
+        if (dispatcher.inLoop()) {
+            return super.notifyBatch(progress);
+        }
+
+        final List<P> batch = new ArrayList<P>();
+        for (P value : progress) {
+            batch.add(value);
+        }
+        dispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                EventLoopDeferred.super.notifyBatch(batch);
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Deferred<D, F, P> reject(final F reject) {
+        if (dispatcher.inLoop()) {
+            return super.reject(reject);
+        }
+
+        dispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                EventLoopDeferred.super.reject(reject);
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Deferred<D, F, P> resolve(final D resolve) {
+        if (dispatcher.inLoop()) {
+            return super.resolve(resolve);
+        }
+
+        dispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                EventLoopDeferred.super.resolve(resolve);
+            }
+        });
+        return this;
+    }
+
+    @Override
+    protected void expire() {
+        if (dispatcher.inLoop()) {
+            super.expire();
+            return;
+        }
+
+        dispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                EventLoopDeferred.super.expire();
+            }
+        });
+    }
+
+    @Override
+    protected void triggerAlways(AlwaysCallback<D, F> callback, D resolve, F reject) {
+        dispatcher.always(callback, state(), resolve, reject);
+    }
+
+    @Override
+    protected void triggerDone(DoneCallback<D> callback, D resolved) {
+        dispatcher.done(callback, resolved);
+    }
+
+    @Override
+    protected void triggerFail(FailCallback<F> callback, F rejected) {
+        dispatcher.fail(callback, rejected);
+    }
+
+    @Override
+    protected void triggerProgress(ProgressCallback<P> callback, P progress) {
+        dispatcher.progress(callback, progress);
+    }
+
+    @Override
+    protected void triggerProgressBatch(BatchProgressCallback<P> callback, List<P> batch) {
+        dispatcher.progressBatch(callback, batch);
+    }
+}
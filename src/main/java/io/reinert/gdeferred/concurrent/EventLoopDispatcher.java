@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.concurrent;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.BatchProgressCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.context.Contexts;
+
+/**
+ * Queue of callback invocations drained by a single event-loop thread.
+ * <p>
+ * Invocations are kept in a reusable ring of parallel arrays, so queuing a callback allocates nothing once the ring
+ * has grown to the working size. The loop calls {@link #drain()} at the end of each iteration, running at most the
+ * batch limit of invocations; the rest waits for the next iteration.
+ * <p>
+ * The loop thread is bound explicitly, either at construction or by calling {@link #bind()} from it, and only that
+ * thread may drain. Until then, no thread is in the loop, so every settle of an {@link EventLoopDeferred} is queued
+ * too. Work submitted from other threads through {@link #execute(Runnable)} is marshalled onto the loop, and the
+ * optional wakeup executor is signaled so an idle loop can schedule a drain. A drain stopped by the batch limit
+ * signals it again, so the rest does not wait for more work to arrive.
+ * <p>
+ * When a {@link io.reinert.gdeferred.context.ContextPropagator} is set, the context of the queuing thread is captured
+ * with each invocation and attached around it on the loop.
+ *
+ * @see EventLoopDeferred
+ */
+public class EventLoopDispatcher implements Executor {
+
+    public static final int DEFAULT_BATCH_LIMIT = 1024;
+
+    private static final byte TASK = 0;
+    private static final byte DONE = 1;
+    private static final byte FAIL = 2;
+    private static final byte PROGRESS = 3;
+    private static final byte ALWAYS_RESOLVED = 4;
+    private static final byte ALWAYS_REJECTED = 5;
+    private static final byte PROGRESS_BATCH = 6;
+
+    private final Logger log = Logger.getLogger(String.valueOf(EventLoopDispatcher.class));
+
+    private final int batchLimit;
+    private final Executor wakeup;
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private volatile Thread loop;
+
+    private byte[] kinds = new byte[64];
+    private Object[] targets = new Object[64];
+    private Object[] values = new Object[64];
+    private Object[] contexts;
+    private int head;
+    private int size;
+
+    public EventLoopDispatcher() {
+        this(DEFAULT_BATCH_LIMIT, null);
+    }
+
+    /**
+     * @param batchLimit    the maximum number of invocations run by each {@link #drain()}
+     * @param wakeup        executor signaled with a drain task, to run on the loop thread, when work arrives from
+     *                      another thread; may be null
+     */
+    public EventLoopDispatcher(int batchLimit, Executor wakeup) {
+        this(null, batchLimit, wakeup);
+    }
+
+    /**
+     * @param loop          the loop thread, or null to bind it later with {@link #bind()}
+     * @param batchLimit    the maximum number of invocations run by each {@link #drain()}
+     * @param wakeup        executor signaled with a drain task, to run on the loop thread, when work arrives from
+     *                      another thread; may be null
+     */
+    public EventLoopDispatcher(Thread loop, int batchLimit, Executor wakeup) {
+        if (batchLimit < 1) {
+            throw new IllegalArgumentException("Batch limit must be greater than zero");
+        }
+        this.loop = loop;
+        this.batchLimit = batchLimit;
+        this.wakeup = wakeup;
+    }
+
+    /**
+     * Binds the current thread as the loop thread.
+     *
+     * @return this dispatcher
+     *
+     * @throws IllegalStateException if another thread is already bound
+     */
+    public EventLoopDispatcher bind() {
+        final Thread current = Thread.currentThread();
+        synchronized (this) {
+            if (loop != null && loop != current) {
+                throw new IllegalStateException("Dispatcher already bound to " + loop.getName());
+            }
+            loop = current;
+        }
+        return this;
+    }
+
+    /**
+     * Runs the queued invocations, up to the batch limit.
+     *
+     * @return the number of invocations run
+     *
+     * @throws IllegalStateException if not called from the loop thread
+     */
+    public int drain() {
+        if (loop != Thread.currentThread()) {
+            throw new IllegalStateException("Dispatcher must be drained by its loop thread");
+        }
+
+        int count = 0;
+        while (count < batchLimit) {
+            final byte kind;
+            final Object target;
+            final Object value;
+            Object context = null;
+            synchronized (this) {
+                if (size == 0) break;
+                kind = kinds[head];
+                target = targets[head];
+                value = values[head];
+                targets[head] = null;
+                values[head] = null;
+                if (contexts != null) {
+                    context = contexts[head];
+                    contexts[head] = null;
+                }
+                head = (head + 1) & (kinds.length - 1);
+                size--;
+            }
+            count++;
+            if (context == null) {
+                invoke(kind, target, value);
+                continue;
+            }
+            final Object previous;
+            try {
+                previous = Contexts.attach(context);
+            } catch (Exception e) {
+                log.log(Level.SEVERE, "An uncaught exception occurred in a ContextPropagator", e);
+                continue;
+            }
+            try {
+                invoke(kind, target, value);
+            } finally {
+                try {
+                    Contexts.restore(previous);
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "An uncaught exception occurred in a ContextPropagator", e);
+                }
+            }
+        }
+        // The queue is only signaled when it becomes non-empty, so work left over must schedule its own drain
+        if (count == batchLimit && wakeup != null && pending() > 0) {
+            wakeup.execute(drainTask);
+        }
+        return count;
+    }
+
+    /**
+     * Runs the task on the loop thread. When called from the loop thread, the task is queued like a callback.
+     *
+     * @param task the task
+     */
+    @Override
+    public void execute(Runnable task) {
+        enqueue(TASK, task, null);
+    }
+
+    /**
+     * Checks whether the current thread is the loop thread.
+     * Before the loop thread is bound, no thread is.
+     *
+     * @return {@code true} if in the loop, {@code false} otherwise
+     */
+    public boolean inLoop() {
+        return loop == Thread.currentThread();
+    }
+
+    public synchronized int pending() {
+        return size;
+    }
+
+    <D, F> void always(AlwaysCallback<D, F> callback, Promise.State state, D resolved, F rejected) {
+        if (state == Promise.State.RESOLVED) {
+            enqueue(ALWAYS_RESOLVED, callback, resolved);
+        } else {
+            enqueue(ALWAYS_REJECTED, callback, rejected);
+        }
+    }
+
+    <D> void done(DoneCallback<D> callback, D resolved) {
+        enqueue(DONE, callback, resolved);
+    }
+
+    <F> void fail(FailCallback<F> callback, F rejected) {
+        enqueue(FAIL, callback, rejected);
+    }
+
+    <P> void progress(ProgressCallback<P> callback, P progress) {
+        enqueue(PROGRESS, callback, progress);
+    }
+
+    <P> void progressBatch(BatchProgressCallback<P> callback, List<P> batch) {
+        enqueue(PROGRESS_BATCH, callback, batch);
+    }
+
+    private void enqueue(byte kind, Object target, Object value) {
+        final Object context = Contexts.capture();
+        final boolean signal;
+        synchronized (this) {
+            if (size == kinds.length) {
+                grow();
+            }
+            final int tail = (head + size) & (kinds.length - 1);
+            kinds[tail] = kind;
+            targets[tail] = target;
+            values[tail] = value;
+            if (context != null) {
+                if (contexts == null) {
+                    contexts = new Object[kinds.length];
+                }
+                contexts[tail] = context;
+            }
+            size++;
+            signal = size == 1 && wakeup != null && !inLoop();
+        }
+        if (signal) {
+            wakeup.execute(drainTask);
+        }
+    }
+
+    private void grow() {
+        final int capacity = kinds.length * 2;
+        final byte[] newKinds = new byte[capacity];
+        final Object[] newTargets = new Object[capacity];
+        final Object[] newValues = new Object[capacity];
+        final Object[] newContexts = contexts == null ? null : new Object[capacity];
+        for (int i = 0; i < size; i++) {
+            final int from = (head + i) & (kinds.length - 1);
+            newKinds[i] = kinds[from];
+            newTargets[i] = targets[from];
+            newValues[i] = values[from];
+            if (newContexts != null) newContexts[i] = contexts[from];
+        }
+        kinds = newKinds;
+        targets = newTargets;
+        values = newValues;
+        contexts = newContexts;
+        head = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void invoke(byte kind, Object target, Object value) {
+        try {
+            switch (kind) {
+                case TASK:
+                    ((Runnable) target).run();
+                    break;
+                case DONE:
+                    ((DoneCallback<Object>) target).onDone(value);
+                    break;
+                case FAIL:
+                    ((FailCallback<Object>) target).onFail(value);
+                    break;
+                case PROGRESS:
+                    ((ProgressCallback<Object>) target).onProgress(value);
+                    break;
+                case PROGRESS_BATCH:
+                    ((BatchProgressCallback<Object>) target).onProgressBatch((List<Object>) value);
+                    break;
+                case ALWAYS_RESOLVED:
+                    ((AlwaysCallback<Object, Object>) target).onAlways(Promise.State.RESOLVED, value, null);
+                    break;
+                default:
+                    ((AlwaysCallback<Object, Object>) target).onAlways(Promise.State.REJECTED, null, value);
+                    break;
+            }
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a callback dispatched by the event loop", e);
+        }
+    }
+}
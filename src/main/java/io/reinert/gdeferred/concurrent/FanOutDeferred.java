@@ -0,0 +1,248 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.context.Contexts;
+import io.reinert.gdeferred.impl.DeferredObject;
+
+/**
+ * Deferred that dispatches large callback lists in parallel.
+ * <p>
+ * Once the number of callbacks of a kind reaches the threshold, they are split into chunks dispatched across the
+ * executor. The triggering thread runs chunks too, claiming every chunk no worker has started yet, so it only waits
+ * for chunks already running elsewhere: a busy or bounded executor slows the dispatch down but never deadlocks it.
+ * The trigger still returns only after every callback has run, and an exception thrown by one callback does not
+ * prevent the others from running.
+ * <p>
+ * Callbacks of the same kind must then tolerate being executed concurrently.
+ *
+ * @param <D> type of DoneCallback
+ * @param <F> type of FailCallback
+ * @param <P> type of ProgressCallback
+ */
+public class FanOutDeferred<D, F, P> extends DeferredObject<D, F, P> {
+
+    public static final int DEFAULT_THRESHOLD = 1024;
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private final Executor executor;
+    private final int threshold;
+    private final int chunkSize;
+
+    public FanOutDeferred(Executor executor) {
+        this(executor, DEFAULT_THRESHOLD, DEFAULT_CHUNK_SIZE);
+    }
+
+    public FanOutDeferred(Executor executor, int threshold, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be greater than zero");
+        }
+        this.executor = executor;
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected void triggerAlways(final D resolve, final F reject) {
+        final CallbackView view = viewAlwaysCallbacks();
+        if (view.size() < threshold) {
+            super.triggerAlways(resolve, reject);
+            return;
+        }
+
+        fanOut(new Chunk(view) {
+            @SuppressWarnings("unchecked")
+            @Override
+            void dispatch(Object callback) {
+                triggerAlways((AlwaysCallback<D, F>) callback, resolve, reject);
+            }
+
+            @Override
+            String kind() {
+                return "AlwaysCallback";
+            }
+        });
+    }
+
+    @Override
+    protected void triggerDone(final D resolved) {
+        final CallbackView view = viewDoneCallbacks();
+        if (view.size() < threshold) {
+            super.triggerDone(resolved);
+            return;
+        }
+
+        fanOut(new Chunk(view) {
+            @SuppressWarnings("unchecked")
+            @Override
+            void dispatch(Object callback) {
+                triggerDone((DoneCallback<D>) callback, resolved);
+            }
+
+            @Override
+            String kind() {
+                return "DoneCallback";
+            }
+        });
+    }
+
+    @Override
+    protected void triggerFail(final F rejected) {
+        final CallbackView view = viewFailCallbacks();
+        if (view.size() < threshold) {
+            super.triggerFail(rejected);
+            return;
+        }
+
+        fanOut(new Chunk(view) {
+            @SuppressWarnings("unchecked")
+            @Override
+            void dispatch(Object callback) {
+                triggerFail((FailCallback<F>) callback, rejected);
+            }
+
+            @Override
+            String kind() {
+                return "FailCallback";
+            }
+        });
+    }
+
+    @Override
+    protected void triggerProgress(final P progress) {
+        final CallbackView view = viewProgressCallbacks();
+        if (view.size() < threshold) {
+            super.triggerProgress(progress);
+            return;
+        }
+
+        fanOut(new Chunk(view) {
+            @SuppressWarnings("unchecked")
+            @Override
+            void dispatch(Object callback) {
+                triggerProgress((ProgressCallback<P>) callback, progress);
+            }
+
+            @Override
+            String kind() {
+                return "ProgressCallback";
+            }
+        });
+    }
+
+    private void fanOut(final Chunk chunk) {
+        final int length = chunk.callbacks.length;
+        final int chunks = (length + chunkSize - 1) / chunkSize;
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(chunks);
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                claimChunks(chunk, next, chunks, finished);
+            }
+        };
+
+        for (int i = 1; i < chunks; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // The triggering thread claims the chunks left
+                break;
+            }
+        }
+
+        claimChunks(chunk, next, chunks, finished);
+
+        // Every chunk is claimed by now, so the wait is only for chunks being run by other threads
+        boolean interrupted = false;
+        while (finished.getCount() > 0) {
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void claimChunks(Chunk chunk, AtomicInteger next, int chunks, CountDownLatch finished) {
+        int index;
+        while ((index = next.getAndIncrement()) < chunks) {
+            try {
+                final int from = index * chunkSize;
+                chunk.run(from, Math.min(from + chunkSize, chunk.callbacks.length));
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    private abstract class Chunk {
+
+        final Object[] callbacks;
+        // Context snapshots aligned with the callbacks, or null when propagation is off
+        final Object[] contexts;
+
+        Chunk(CallbackView view) {
+            this.callbacks = view.toArray();
+            this.contexts = Contexts.getPropagator() == null ? null : view.contexts();
+        }
+
+        abstract void dispatch(Object callback);
+
+        abstract String kind();
+
+        void run(int from, int to) {
+            for (int i = from; i < to; i++) {
+                // Attached on the worker thread, as the serial trigger loops do on the settling one
+                final Object context = contexts == null ? null : contexts[i];
+                boolean attached = false;
+                Object previous = null;
+                try {
+                    if (context != null) {
+                        previous = Contexts.attach(context);
+                        attached = true;
+                    }
+                    dispatch(callbacks[i]);
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "An uncaught exception occurred in a " + kind(), e);
+                } finally {
+                    if (attached) restore(previous);
+                }
+            }
+        }
+
+        private void restore(Object previous) {
+            try {
+                Contexts.restore(previous);
+            } catch (Exception e) {
+                log.log(Level.SEVERE, "An uncaught exception occurred in a ContextPropagator", e);
+            }
+        }
+    }
+}
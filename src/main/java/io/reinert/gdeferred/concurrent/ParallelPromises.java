@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.concurrent;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.Subscription;
+import io.reinert.gdeferred.impl.DeferredObject;
+import io.reinert.gdeferred.impl.StageListener;
+
+/**
+ * JVM only combinators that spread CPU-bound work across threads.
+ * <p>
+ * This package is not part of the GWT module.
+ */
+public final class ParallelPromises {
+
+    private ParallelPromises() {
+    }
+
+    /**
+     * Applies a CPU-bound filter to every item of the collection, forking the work into {@code parallelism}
+     * chunks submitted to the executor.
+     * <p>
+     * Any executor may be used; a {@code ForkJoinPool} is the natural choice on Java 7+.
+     * The returned promise is resolved with the results in input order, or rejected with the first exception
+     * thrown by the filter. The number of completed items is notified as progress after each chunk.
+     * <p>
+     * Callbacks are executed by the worker thread that settles the promise. Registering them is thread-safe.
+     *
+     * @param items         the input items
+     * @param filter        the function applied to each item
+     * @param executor      the executor running the chunks
+     * @param parallelism   the number of chunks
+     * @param <T>           the input type
+     * @param <D>           the output type
+     *
+     * @return a promise of all the mapped results
+     */
+    public static <T, D> Promise<List<D>, Throwable, Integer> mapAsync(Collection<? extends T> items,
+                                                                       DoneFilter<T, D> filter,
+                                                                       Executor executor,
+                                                                       int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        }
+
+        final ForkedMap<T, D> map = new ForkedMap<T, D>(items, filter);
+        if (map.input.length == 0) {
+            map.resolve(map.resultList());
+            return map;
+        }
+
+        final int chunks = Math.min(parallelism, map.input.length);
+        final int chunkSize = (map.input.length + chunks - 1) / chunks;
+        for (int from = 0; from < map.input.length; from += chunkSize) {
+            executor.execute(map.chunk(from, Math.min(from + chunkSize, map.input.length)));
+        }
+        return map;
+    }
+
+    private static final class ForkedMap<T, D> extends DeferredObject<List<D>, Throwable, Integer> {
+
+        private final Object[] input;
+        private final Object[] results;
+        private final DoneFilter<T, D> filter;
+        private int completed;
+        // Read by the workers without the lock to stop early once the map has settled
+        private volatile boolean settled;
+
+        ForkedMap(Collection<? extends T> items, DoneFilter<T, D> filter) {
+            this.input = items.toArray();
+            this.results = new Object[input.length];
+            this.filter = filter;
+        }
+
+        @Override
+        public synchronized Promise<List<D>, Throwable, Integer> always(AlwaysCallback<List<D>, Throwable> callback) {
+            return super.always(callback);
+        }
+
+        @Override
+        public synchronized Promise<List<D>, Throwable, Integer> done(DoneCallback<List<D>> callback) {
+            return super.done(callback);
+        }
+
+        @Override
+        public synchronized Promise<List<D>, Throwable, Integer> fail(FailCallback<Throwable> callback) {
+            return super.fail(callback);
+        }
+
+        @Override
+        public synchronized Promise<List<D>, Throwable, Integer> progress(ProgressCallback<Integer> callback) {
+            return super.progress(callback);
+        }
+
+        @Override
+        protected synchronized void listen(StageListener<List<D>, Throwable, Integer> listener) {
+            super.listen(listener);
+        }
+
+        @Override
+        public synchronized Subscription subscribeAlways(AlwaysCallback<List<D>, Throwable> callback) {
+            return super.subscribeAlways(callback);
+        }
+
+        @Override
+        public synchronized Subscription subscribeDone(DoneCallback<List<D>> callback) {
+            return super.subscribeDone(callback);
+        }
+
+        @Override
+        public synchronized Subscription subscribeFail(FailCallback<Throwable> callback) {
+            return super.subscribeFail(callback);
+        }
+
+        @Override
+        public synchronized Subscription subscribeProgress(ProgressCallback<Integer> callback) {
+            return super.subscribeProgress(callback);
+        }
+
+        Runnable chunk(final int from, final int to) {
+            return new Runnable() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public void run() {
+                    try {
+                        for (int i = from; i < to; i++) {
+                            if (settled) return;
+                            results[i] = filter.filterDone((T) input[i]);
+                        }
+                    } catch (Throwable e) {
+                        onChunkFail(e);
+                        return;
+                    }
+                    onChunkDone(to - from);
+                }
+            };
+        }
+
+        private synchronized void onChunkDone(int count) {
+            if (!isPending()) return;
+            completed += count;
+            notify(completed);
+            if (completed == results.length) {
+                settled = true;
+                resolve(resultList());
+            }
+        }
+
+        private synchronized void onChunkFail(Throwable e) {
+            if (!isPending()) return;
+            settled = true;
+            reject(e);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<D> resultList() {
+            return (List<D>) Arrays.asList(results);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.context;
+
+/**
+ * Service provider carrying a request context, e.g., tenant, trace id or logging MDC, from the code registering a
+ * callback to the thread invoking it.
+ * <p>
+ * Several contexts are carried by a single propagator capturing them together.
+ *
+ * @see Contexts#setPropagator(ContextPropagator)
+ */
+public interface ContextPropagator {
+
+    /**
+     * Called when a callback is registered, on the registering thread.
+     *
+     * @return an immutable snapshot of the current context, or {@code null} if there is nothing to carry
+     */
+    Object capture();
+
+    /**
+     * Called before invoking the callback, on the invoking thread.
+     *
+     * @param snapshot the snapshot captured at registration
+     *
+     * @return the context in place before, handed back to {@link #restore(Object)}
+     */
+    Object attach(Object snapshot);
+
+    /**
+     * Called after invoking the callback, even if it threw.
+     *
+     * @param previous the value returned by {@link #attach(Object)}
+     */
+    void restore(Object previous);
+}
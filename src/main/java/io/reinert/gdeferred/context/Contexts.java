@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.context;
+
+/**
+ * Holder of the {@link ContextPropagator} used by promise callbacks.
+ * <p>
+ * Propagation is off by default. When off, each registration only pays for a static read, and each dispatch for a
+ * null check. When on, a snapshot is captured once per registered callback and attached around its invocation by
+ * the settling promise, so the callbacks of every stage see the context they were registered in.
+ * <p>
+ * Callbacks running right away, because the promise had already settled, already run in the registering context
+ * and are not wrapped. {@code FanOutDeferred} attaches each snapshot on the worker thread running the callback.
+ * {@link io.reinert.gdeferred.impl.CompactDeferred} keeps no snapshot, to save space, and does not propagate contexts.
+ *
+ * <pre>
+ * <code>
+ * Contexts.setPropagator(new ContextPropagator() {
+ *   public Object capture() {
+ *     return MDC.getCopyOfContextMap();
+ *   }
+ *   public Object attach(Object snapshot) {
+ *     Map&lt;String, String&gt; previous = MDC.getCopyOfContextMap();
+ *     MDC.setContextMap((Map&lt;String, String&gt;) snapshot);
+ *     return previous;
+ *   }
+ *   public void restore(Object previous) {
+ *     ...
+ *   }
+ * });
+ * </code>
+ * </pre>
+ */
+public final class Contexts {
+
+    private static volatile ContextPropagator propagator;
+
+    private Contexts() {
+    }
+
+    public static ContextPropagator getPropagator() {
+        return propagator;
+    }
+
+    /**
+     * Sets the propagator for the callbacks registered from now on. Snapshots taken before are attached by the new
+     * propagator, so it should be set once, at startup.
+     *
+     * @param propagator the propagator, or {@code null} to turn propagation off
+     */
+    public static void setPropagator(ContextPropagator propagator) {
+        Contexts.propagator = propagator;
+    }
+
+    /**
+     * Captures the current context.
+     *
+     * @return the snapshot, or {@code null} if propagation is off
+     */
+    public static Object capture() {
+        final ContextPropagator current = propagator;
+        return current == null ? null : current.capture();
+    }
+
+    /**
+     * Attaches a snapshot to the current thread.
+     *
+     * @param snapshot the snapshot
+     *
+     * @return the context to restore afterwards
+     */
+    public static Object attach(Object snapshot) {
+        final ContextPropagator current = propagator;
+        return current == null ? null : current.attach(snapshot);
+    }
+
+    /**
+     * Restores the context replaced by {@link #attach(Object)}.
+     *
+     * @param previous the value returned by {@link #attach(Object)}
+     */
+    public static void restore(Object previous) {
+        final ContextPropagator current = propagator;
+        if (current != null) current.restore(previous);
+    }
+}
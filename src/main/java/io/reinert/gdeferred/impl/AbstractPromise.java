@@ -17,11 +17,13 @@
 package io.reinert.gdeferred.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.BatchProgressCallback;
 import io.reinert.gdeferred.DoneCallback;
 import io.reinert.gdeferred.DoneFilter;
 import io.reinert.gdeferred.DonePipe;
@@ -32,15 +34,28 @@ import io.reinert.gdeferred.ProgressCallback;
 import io.reinert.gdeferred.ProgressFilter;
 import io.reinert.gdeferred.ProgressPipe;
 import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.SubscribablePromise;
+import io.reinert.gdeferred.Subscription;
+import io.reinert.gdeferred.context.Contexts;
 
 /**
  * Abstract implementation of {@link io.reinert.gdeferred.Promise}.
+ * <p>
+ * When a {@link io.reinert.gdeferred.context.ContextPropagator} is set, each callback registered while pending keeps
+ * a snapshot of the registering context, attached around its invocation by the trigger loops.
+ * <p>
+ * A {@link StageListener}, registered by the stage returned from {@code then(...)}, is kept in a dedicated slot when
+ * no other callback precedes it, and dispatched first; otherwise it joins the callback lists. Either way the
+ * registration order is kept.
  *
  * @param <D> The type of the result received when the promise is done
  * @param <F> The type of the result received when the promise failed
  * @param <P> The type of the progress notification
  */
-public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
+public abstract class AbstractPromise<D, F, P> implements SubscribablePromise<D, F, P> {
+
+    // Marks a dispatch whose snapshot was not attached, as null is a valid previous context
+    private static final Object NOT_ATTACHED = new Object();
 
     protected final Logger log = Logger.getLogger(String.valueOf(AbstractPromise.class));
 
@@ -48,28 +63,52 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
     protected D resolveResult;
     protected State state = State.PENDING;
 
-    private final List<DoneCallback<D>> doneCallbacks = new ArrayList<DoneCallback<D>>();
-    private final List<FailCallback<F>> failCallbacks = new ArrayList<FailCallback<F>>();
-    private List<AlwaysCallback<D, F>> alwaysCallbacks;
-    private List<ProgressCallback<P>> progressCallbacks;
+    private final CallbackList<DoneCallback<D>> doneCallbacks = new CallbackList<DoneCallback<D>>();
+    private final CallbackList<FailCallback<F>> failCallbacks = new CallbackList<FailCallback<F>>();
+    private CallbackList<AlwaysCallback<D, F>> alwaysCallbacks;
+    private CallbackList<ProgressCallback<P>> progressCallbacks;
+    private StageListener<D, F, P> stage;
+
+    private final int progressReplay;
+    private Object[] progressHistory;
+    private int progressCount;
+
+    /**
+     * Creates a promise that replays the latest progress to new progress callbacks.
+     */
+    protected AbstractPromise() {
+        this(1);
+    }
+
+    /**
+     * Creates a promise that replays the latest progress values to new progress callbacks.
+     *
+     * @param progressReplay the number of progress values kept for replay; {@code 0} disables the replay
+     */
+    protected AbstractPromise(int progressReplay) {
+        if (progressReplay < 0) {
+            throw new IllegalArgumentException("Progress replay cannot be negative");
+        }
+        this.progressReplay = progressReplay;
+    }
 
     @Override
     public Promise<D, F, P> always(AlwaysCallback<D, F> callback) {
-        getAlwaysCallbacks().add(callback);
+        alwaysCallbacks().add(callback, Contexts.capture());
         if (!isPending()) triggerAlways(callback, resolveResult, rejectResult);
         return this;
     }
 
     @Override
     public Promise<D, F, P> done(DoneCallback<D> callback) {
-        doneCallbacks.add(callback);
+        doneCallbacks.add(callback, Contexts.capture());
         if (isResolved()) triggerDone(callback, resolveResult);
         return this;
     }
 
     @Override
     public Promise<D, F, P> fail(FailCallback<F> callback) {
-        failCallbacks.add(callback);
+        failCallbacks.add(callback, Contexts.capture());
         if (isRejected()) triggerFail(callback, rejectResult);
         return this;
     }
@@ -91,7 +130,8 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
 
     @Override
     public Promise<D, F, P> progress(ProgressCallback<P> callback) {
-        getProgressCallbacks().add(callback);
+        progressCallbacks().add(callback, Contexts.capture());
+        if (progressCount > 0) replayProgress(callback);
         return this;
     }
 
@@ -100,6 +140,34 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
         return state;
     }
 
+    @Override
+    public Subscription subscribeAlways(AlwaysCallback<D, F> callback) {
+        final Subscription subscription = alwaysCallbacks().subscribe(callback, Contexts.capture());
+        if (!isPending()) triggerAlways(callback, resolveResult, rejectResult);
+        return subscription;
+    }
+
+    @Override
+    public Subscription subscribeDone(DoneCallback<D> callback) {
+        final Subscription subscription = doneCallbacks.subscribe(callback, Contexts.capture());
+        if (isResolved()) triggerDone(callback, resolveResult);
+        return subscription;
+    }
+
+    @Override
+    public Subscription subscribeFail(FailCallback<F> callback) {
+        final Subscription subscription = failCallbacks.subscribe(callback, Contexts.capture());
+        if (isRejected()) triggerFail(callback, rejectResult);
+        return subscription;
+    }
+
+    @Override
+    public Subscription subscribeProgress(ProgressCallback<P> callback) {
+        final Subscription subscription = progressCallbacks().subscribe(callback, Contexts.capture());
+        if (progressCount > 0) replayProgress(callback);
+        return subscription;
+    }
+
     @Override
     public Promise<D, F, P> then(DoneCallback<D> callback) {
         return done(callback);
@@ -157,34 +225,226 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
         return new PipedPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, donePipe, failPipe, progressPipe);
     }
 
+    /**
+     * Returns a snapshot of the always callbacks registered.
+     * <p>
+     * The list is read-only: callbacks are no longer kept in a list, so registering or removing through it would
+     * silently do nothing. Any attempt throws {@link UnsupportedOperationException} instead.
+     *
+     * @return an unmodifiable copy of the callbacks
+     * @deprecated the list is a read-only copy; use {@link #viewAlwaysCallbacks()}
+     * for inspecting the callbacks, and {@link #subscribeAlways(AlwaysCallback)} for removable registrations
+     */
+    @Deprecated
     protected List<AlwaysCallback<D, F>> getAlwaysCallbacks() {
-        if (alwaysCallbacks == null)
-            alwaysCallbacks = new ArrayList<AlwaysCallback<D, F>>();
-        return alwaysCallbacks;
+        return Collections.unmodifiableList(alwaysCallbacks == null
+                ? new ArrayList<AlwaysCallback<D, F>>(0) : alwaysCallbacks.toList());
     }
 
+    /**
+     * Returns a snapshot of the done callbacks registered.
+     * <p>
+     * The list is read-only: callbacks are no longer kept in a list, so registering or removing through it would
+     * silently do nothing. Any attempt throws {@link UnsupportedOperationException} instead.
+     *
+     * @return an unmodifiable copy of the callbacks
+     * @deprecated the list is a read-only copy; use {@link #viewDoneCallbacks()}
+     * for inspecting the callbacks, and {@link #subscribeDone(DoneCallback)} for removable registrations
+     */
+    @Deprecated
     protected List<DoneCallback<D>> getDoneCallbacks() {
-        return doneCallbacks;
+        final List<DoneCallback<D>> callbacks = doneCallbacks.toList();
+        if (stage != null) callbacks.add(0, stage);
+        return Collections.unmodifiableList(callbacks);
     }
 
+    /**
+     * Returns a snapshot of the fail callbacks registered.
+     * <p>
+     * The list is read-only: callbacks are no longer kept in a list, so registering or removing through it would
+     * silently do nothing. Any attempt throws {@link UnsupportedOperationException} instead.
+     *
+     * @return an unmodifiable copy of the callbacks
+     * @deprecated the list is a read-only copy; use {@link #viewFailCallbacks()}
+     * for inspecting the callbacks, and {@link #subscribeFail(FailCallback)} for removable registrations
+     */
+    @Deprecated
     protected List<FailCallback<F>> getFailCallbacks() {
-        return failCallbacks;
+        final List<FailCallback<F>> callbacks = failCallbacks.toList();
+        if (stage != null) callbacks.add(0, stage);
+        return Collections.unmodifiableList(callbacks);
     }
 
+    /**
+     * Returns a snapshot of the progress callbacks registered.
+     * <p>
+     * The list is read-only: callbacks are no longer kept in a list, so registering or removing through it would
+     * silently do nothing. Any attempt throws {@link UnsupportedOperationException} instead.
+     *
+     * @return an unmodifiable copy of the callbacks
+     * @deprecated the list is a read-only copy; use
+     * {@link #viewProgressCallbacks()} for inspecting the callbacks, and
+     * {@link #subscribeProgress(ProgressCallback)} for removable registrations
+     */
+    @Deprecated
     protected List<ProgressCallback<P>> getProgressCallbacks() {
+        final List<ProgressCallback<P>> callbacks = progressCallbacks == null
+                ? new ArrayList<ProgressCallback<P>>(1) : progressCallbacks.toList();
+        if (stage != null) callbacks.add(0, stage);
+        return Collections.unmodifiableList(callbacks);
+    }
+
+    /**
+     * Returns a read-only view of the always callbacks registered, in dispatch order.
+     *
+     * @return a view backed by the promise
+     */
+    protected CallbackView viewAlwaysCallbacks() {
+        return new CallbackView(null, alwaysCallbacks);
+    }
+
+    /**
+     * Returns a read-only view of the done callbacks registered, in dispatch order.
+     *
+     * @return a view backed by the promise
+     */
+    protected CallbackView viewDoneCallbacks() {
+        return new CallbackView(stage, doneCallbacks);
+    }
+
+    /**
+     * Returns a read-only view of the fail callbacks registered, in dispatch order.
+     *
+     * @return a view backed by the promise
+     */
+    protected CallbackView viewFailCallbacks() {
+        return new CallbackView(stage, failCallbacks);
+    }
+
+    /**
+     * Returns a read-only view of the progress callbacks registered, in dispatch order.
+     *
+     * @return a view backed by the promise
+     */
+    protected CallbackView viewProgressCallbacks() {
+        return new CallbackView(stage, progressCallbacks);
+    }
+
+    /**
+     * Registers the listener of a stage derived from this promise, like {@code done}, {@code fail} and
+     * {@code progress} together. Internal to the library: subclasses override it only to guard or react to the
+     * registration as they do for the other callbacks, and must call super.
+     * <p>
+     * The listener takes the stage slot if nothing was registered before, or joins the callback lists otherwise.
+     * Past progress is replayed before the outcome, so that the stage is still pending when receiving it.
+     *
+     * @param listener the stage listener
+     */
+    protected void listen(StageListener<D, F, P> listener) {
+        final Object context = Contexts.capture();
+        if (stage == null && doneCallbacks.isEmpty() && failCallbacks.isEmpty()
+                && (progressCallbacks == null || progressCallbacks.isEmpty())) {
+            listener.context = context;
+            stage = listener;
+        } else {
+            doneCallbacks.add(listener, context);
+            failCallbacks.add(listener, context);
+            progressCallbacks().add(listener, context);
+        }
+        if (progressCount > 0) replayProgress(listener);
+        if (isResolved()) {
+            triggerDone(listener, resolveResult);
+        } else if (isRejected()) {
+            triggerFail(listener, rejectResult);
+        }
+    }
+
+    /**
+     * Moves the listener in the stage slot to the front of the callback lists.
+     */
+    private void releaseStage() {
+        final StageListener<D, F, P> listener = stage;
+        if (listener == null) return;
+        stage = null;
+
+        final CallbackList<DoneCallback<D>> done = new CallbackList<DoneCallback<D>>();
+        done.add(listener, listener.context);
+        doneCallbacks.prependAll(done);
+        final CallbackList<FailCallback<F>> fail = new CallbackList<FailCallback<F>>();
+        fail.add(listener, listener.context);
+        failCallbacks.prependAll(fail);
+        final CallbackList<ProgressCallback<P>> progress = new CallbackList<ProgressCallback<P>>();
+        progress.add(listener, listener.context);
+        progressCallbacks().prependAll(progress);
+    }
+
+    private CallbackList<AlwaysCallback<D, F>> alwaysCallbacks() {
+        if (alwaysCallbacks == null)
+            alwaysCallbacks = new CallbackList<AlwaysCallback<D, F>>();
+        return alwaysCallbacks;
+    }
+
+    private CallbackList<ProgressCallback<P>> progressCallbacks() {
         if (progressCallbacks == null)
-            progressCallbacks = new ArrayList<ProgressCallback<P>>();
+            progressCallbacks = new CallbackList<ProgressCallback<P>>();
         return progressCallbacks;
     }
 
-    protected void triggerAlways(D resolve, F reject) {
+    /**
+     * Keeps the progress value for replay, overwriting the oldest one when the history is full.
+     *
+     * @param progress the progress notified
+     */
+    protected void recordProgress(P progress) {
+        if (progressReplay == 0) return;
+        if (progressHistory == null)
+            progressHistory = new Object[progressReplay];
+        progressHistory[progressCount % progressReplay] = progress;
+        // Wrap around without overflowing, keeping the count above the history size once full
+        progressCount = progressCount + 1 < 2 * progressReplay ? progressCount + 1 : progressReplay;
+    }
+
+    /**
+     * Moves every callback registered in this promise to the front of the target's callbacks.
+     *
+     * @param target the promise that takes over the callbacks
+     */
+    protected void transferCallbacks(AbstractPromise<D, F, P> target) {
+        // Both slots go back to the lists, so that the transferred callbacks still precede the target's
+        releaseStage();
+        target.releaseStage();
+        target.doneCallbacks.prependAll(doneCallbacks);
+        target.failCallbacks.prependAll(failCallbacks);
         if (alwaysCallbacks != null) {
-            for (AlwaysCallback<D, F> callback : alwaysCallbacks) {
-                try {
-                    triggerAlways(callback, resolve, reject);
-                } catch (Exception e) {
-                    log.log(Level.SEVERE, "An uncaught exception occurred in a AlwaysCallback", e);
+            target.alwaysCallbacks().prependAll(alwaysCallbacks);
+            alwaysCallbacks = null;
+        }
+        if (progressCallbacks != null) {
+            target.progressCallbacks().prependAll(progressCallbacks);
+            progressCallbacks = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void replayProgress(ProgressCallback<P> callback) {
+        final int size = Math.min(progressCount, progressReplay);
+        for (int i = progressCount - size; i < progressCount; i++) {
+            triggerProgress(callback, (P) progressHistory[i % progressReplay]);
+        }
+    }
+
+    protected void triggerAlways(D resolve, F reject) {
+        final CallbackList<AlwaysCallback<D, F>> callbacks = alwaysCallbacks;
+        if (callbacks != null) {
+            final int size = callbacks.beginDispatch();
+            try {
+                for (int i = 0; i < size; i++) {
+                    final AlwaysCallback<D, F> callback = callbacks.get(i);
+                    if (callback == null) continue;
+                    dispatchAlways(callback, callbacks.contextAt(i), resolve, reject);
                 }
+            } finally {
+                callbacks.endDispatch();
             }
         }
     }
@@ -193,13 +453,40 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
         callback.onAlways(state, resolve, reject);
     }
 
+    private void dispatchAlways(AlwaysCallback<D, F> callback, Object context, D resolve, F reject) {
+        Object previous = NOT_ATTACHED;
+        try {
+            if (context != null) previous = Contexts.attach(context);
+            triggerAlways(callback, resolve, reject);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a AlwaysCallback", e);
+        } finally {
+            if (previous != NOT_ATTACHED) restoreContext(previous);
+        }
+    }
+
+    private void restoreContext(Object previous) {
+        try {
+            Contexts.restore(previous);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a ContextPropagator", e);
+        }
+    }
+
     protected void triggerDone(D resolved) {
-        for (DoneCallback<D> callback : doneCallbacks) {
-            try {
-                triggerDone(callback, resolved);
-            } catch (Exception e) {
-                log.log(Level.SEVERE, "An uncaught exception occurred in a DoneCallback", e);
+        final StageListener<D, F, P> listener = stage;
+        if (listener != null) {
+            dispatchDone(listener, listener.context, resolved);
+        }
+        final int size = doneCallbacks.beginDispatch();
+        try {
+            for (int i = 0; i < size; i++) {
+                final DoneCallback<D> callback = doneCallbacks.get(i);
+                if (callback == null) continue;
+                dispatchDone(callback, doneCallbacks.contextAt(i), resolved);
             }
+        } finally {
+            doneCallbacks.endDispatch();
         }
     }
 
@@ -207,13 +494,32 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
         callback.onDone(resolved);
     }
 
+    private void dispatchDone(DoneCallback<D> callback, Object context, D resolved) {
+        Object previous = NOT_ATTACHED;
+        try {
+            if (context != null) previous = Contexts.attach(context);
+            triggerDone(callback, resolved);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a DoneCallback", e);
+        } finally {
+            if (previous != NOT_ATTACHED) restoreContext(previous);
+        }
+    }
+
     protected void triggerFail(F rejected) {
-        for (FailCallback<F> callback : failCallbacks) {
-            try {
-                triggerFail(callback, rejected);
-            } catch (Exception e) {
-                log.log(Level.SEVERE, "An uncaught exception occurred in a FailCallback", e);
+        final StageListener<D, F, P> listener = stage;
+        if (listener != null) {
+            dispatchFail(listener, listener.context, rejected);
+        }
+        final int size = failCallbacks.beginDispatch();
+        try {
+            for (int i = 0; i < size; i++) {
+                final FailCallback<F> callback = failCallbacks.get(i);
+                if (callback == null) continue;
+                dispatchFail(callback, failCallbacks.contextAt(i), rejected);
             }
+        } finally {
+            failCallbacks.endDispatch();
         }
     }
 
@@ -221,14 +527,34 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
         callback.onFail(rejected);
     }
 
+    private void dispatchFail(FailCallback<F> callback, Object context, F rejected) {
+        Object previous = NOT_ATTACHED;
+        try {
+            if (context != null) previous = Contexts.attach(context);
+            triggerFail(callback, rejected);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a FailCallback", e);
+        } finally {
+            if (previous != NOT_ATTACHED) restoreContext(previous);
+        }
+    }
+
     protected void triggerProgress(P progress) {
-        if (progressCallbacks != null) {
-            for (ProgressCallback<P> callback : progressCallbacks) {
-                try {
-                    triggerProgress(callback, progress);
-                } catch (Exception e) {
-                    log.log(Level.SEVERE, "An uncaught exception occurred in a ProgressCallback", e);
+        final StageListener<D, F, P> listener = stage;
+        if (listener != null) {
+            dispatchProgress(listener, listener.context, progress);
+        }
+        final CallbackList<ProgressCallback<P>> callbacks = progressCallbacks;
+        if (callbacks != null) {
+            final int size = callbacks.beginDispatch();
+            try {
+                for (int i = 0; i < size; i++) {
+                    final ProgressCallback<P> callback = callbacks.get(i);
+                    if (callback == null) continue;
+                    dispatchProgress(callback, callbacks.contextAt(i), progress);
                 }
+            } finally {
+                callbacks.endDispatch();
             }
         }
     }
@@ -236,4 +562,108 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
     protected void triggerProgress(ProgressCallback<P> callback, P progress) {
         callback.onProgress(progress);
     }
+
+    private void dispatchProgress(ProgressCallback<P> callback, Object context, P progress) {
+        Object previous = NOT_ATTACHED;
+        try {
+            if (context != null) previous = Contexts.attach(context);
+            triggerProgress(callback, progress);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a ProgressCallback", e);
+        } finally {
+            if (previous != NOT_ATTACHED) restoreContext(previous);
+        }
+    }
+
+    protected void triggerProgressBatch(List<P> batch) {
+        final StageListener<D, F, P> listener = stage;
+        if (listener != null) {
+            dispatchProgressBatch(listener, listener.context, batch);
+        }
+        final CallbackList<ProgressCallback<P>> callbacks = progressCallbacks;
+        if (callbacks != null) {
+            final int size = callbacks.beginDispatch();
+            try {
+                for (int i = 0; i < size; i++) {
+                    final ProgressCallback<P> callback = callbacks.get(i);
+                    if (callback == null) continue;
+                    final Object context = callbacks.contextAt(i);
+                    if (callback instanceof BatchProgressCallback) {
+                        dispatchProgressBatch((BatchProgressCallback<P>) callback, context, batch);
+                    } else {
+                        for (P progress : batch) {
+                            dispatchProgress(callback, context, progress);
+                        }
+                    }
+                }
+            } finally {
+                callbacks.endDispatch();
+            }
+        }
+    }
+
+    protected void triggerProgressBatch(BatchProgressCallback<P> callback, List<P> batch) {
+        callback.onProgressBatch(batch);
+    }
+
+    private void dispatchProgressBatch(BatchProgressCallback<P> callback, Object context, List<P> batch) {
+        Object previous = NOT_ATTACHED;
+        try {
+            if (context != null) previous = Contexts.attach(context);
+            triggerProgressBatch(callback, batch);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a ProgressCallback", e);
+        } finally {
+            if (previous != NOT_ATTACHED) restoreContext(previous);
+        }
+    }
+
+    /**
+     * A read-only view of the callbacks of one kind, including the stage listener when there is one.
+     * <p>
+     * The size is read from the live registrations; only {@link #toArray()} and {@link #contexts()} copy.
+     */
+    protected static final class CallbackView {
+
+        private final StageListener<?, ?, ?> stage;
+        private final CallbackList<?> callbacks;
+
+        private CallbackView(StageListener<?, ?, ?> stage, CallbackList<?> callbacks) {
+            this.stage = stage;
+            this.callbacks = callbacks;
+        }
+
+        /**
+         * Returns the number of callbacks registered.
+         */
+        public int size() {
+            return (stage == null ? 0 : 1) + (callbacks == null ? 0 : callbacks.liveSize());
+        }
+
+        /**
+         * Returns a copy of the callbacks, in dispatch order.
+         */
+        public Object[] toArray() {
+            return copy(true);
+        }
+
+        /**
+         * Returns a copy of the context snapshots of the callbacks, aligned with {@link #toArray()}.
+         */
+        public Object[] contexts() {
+            return copy(false);
+        }
+
+        private Object[] copy(boolean items) {
+            final Object[] array = new Object[size()];
+            int offset = 0;
+            if (stage != null) {
+                array[offset++] = items ? stage : stage.context;
+            }
+            if (callbacks != null) {
+                callbacks.copyTo(items ? array : null, items ? null : array, offset);
+            }
+            return array;
+        }
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.Accumulator;
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.StreamPromise;
+
+/**
+ * Abstract implementation of {@link io.reinert.gdeferred.StreamPromise} providing the operators.
+ *
+ * @param <T> Type of the items
+ * @param <F> Type of the failure
+ */
+public abstract class AbstractStreamPromise<T, F> implements StreamPromise<T, F> {
+
+    @Override
+    public <T_OUT> StreamPromise<T_OUT, F> map(DoneFilter<T, T_OUT> filter) {
+        return new MappedStream<T, T_OUT, F>(this, filter);
+    }
+
+    @Override
+    public StreamPromise<T, F> filter(DoneFilter<T, Boolean> predicate) {
+        return new FilteredStream<T, F>(this, predicate);
+    }
+
+    @Override
+    public <R> Promise<R, F, Long> fold(R seed, Accumulator<R, T> accumulator) {
+        return new FoldedPromise<T, R, F>(this, seed, accumulator);
+    }
+}
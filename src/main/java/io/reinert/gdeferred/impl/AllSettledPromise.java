@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.Collection;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Promise resolved when all the given promises are settled, whether resolved or rejected.
+ * <p>
+ * Inputs already settled are read directly. Each pending input gets a single {@link AlwaysCallback} holding its
+ * index. The number of settled inputs is notified as progress.
+ *
+ * @param <D> Type of the resolved values
+ * @param <F> Type of the rejected values
+ *
+ * @see Promises#allSettled(java.util.Collection)
+ */
+public class AllSettledPromise<D, F> extends DeferredObject<Outcomes<D, F>, Void, Integer> {
+
+    private final Outcomes<D, F> outcomes;
+    private int settled;
+
+    public AllSettledPromise(Collection<? extends Promise<D, F, ?>> promises) {
+        this.outcomes = new Outcomes<D, F>(promises.size());
+
+        int index = 0;
+        for (Promise<D, F, ?> promise : promises) {
+            if (!record(index, promise)) {
+                promise.always(new Callback(index));
+            }
+            index++;
+        }
+
+        if (isPending() && settled == outcomes.size()) {
+            resolve(outcomes);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean record(int index, Promise<D, F, ?> promise) {
+        if (!(promise instanceof DeferredObject)) return false;
+
+        final DeferredObject<D, F, ?> root = ((DeferredObject<D, F, ?>) promise).root();
+        if (root.isPending()) return false;
+
+        outcomes.set(index, root.state, root.isResolved() ? root.resolveResult : root.rejectResult);
+        settled++;
+        return true;
+    }
+
+    private void onSettled(int index, State state, D resolved, F rejected) {
+        outcomes.set(index, state, state == State.RESOLVED ? resolved : rejected);
+        settled++;
+        notify(settled);
+        if (settled == outcomes.size()) {
+            resolve(outcomes);
+        }
+    }
+
+    private class Callback implements AlwaysCallback<D, F> {
+
+        private final int index;
+
+        Callback(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onAlways(State state, D resolved, F rejected) {
+            onSettled(index, state, resolved, rejected);
+        }
+    }
+}
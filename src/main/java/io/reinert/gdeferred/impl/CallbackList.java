@@ -0,0 +1,327 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reinert.gdeferred.Subscription;
+
+/**
+ * Array of callbacks whose entries can be removed in constant time.
+ * <p>
+ * Removed entries leave a tombstone ({@code null}) behind, skipped by the dispatch loops. The array is compacted
+ * once tombstones outnumber the live entries, but never while being dispatched, so indexes are stable during
+ * dispatch. Only callbacks registered through {@link #subscribe(Object, Object)} get a handle, re-indexed on
+ * compaction. Context snapshots are kept in a parallel array as well, allocated on the first snapshot.
+ * <p>
+ * Entries prepended while the list is being dispatched are held aside and moved to the front once the last dispatch
+ * loop ends, so they are left out of the running loops like any other entry added during dispatch.
+ *
+ * @param <T> the callback type
+ */
+final class CallbackList<T> {
+
+    private static final Object[] EMPTY = new Object[0];
+    private static final int MIN_COMPACT_SIZE = 8;
+
+    private Object[] items = EMPTY;
+    private Handle[] handles;
+    private Object[] contexts;
+    private int size;
+    private int removed;
+    private int dispatching;
+    private CallbackList<T> prepended;
+
+    /**
+     * Appends the callback.
+     *
+     * @param callback  the callback
+     * @param context   the context snapshot attached around its invocation, or {@code null}
+     */
+    void add(T callback, Object context) {
+        if (size == items.length) {
+            resize(size + 1);
+        }
+        if (context != null) {
+            if (contexts == null) {
+                contexts = new Object[items.length];
+            }
+            contexts[size] = context;
+        }
+        items[size++] = callback;
+    }
+
+    Subscription subscribe(T callback, Object context) {
+        add(callback, context);
+        if (handles == null) {
+            handles = new Handle[items.length];
+        } else if (handles.length < items.length) {
+            final Handle[] newHandles = new Handle[items.length];
+            System.arraycopy(handles, 0, newHandles, 0, size - 1);
+            handles = newHandles;
+        }
+        final Handle handle = new Handle(this, size - 1);
+        handles[size - 1] = handle;
+        return handle;
+    }
+
+    /**
+     * Returns the callback at the index, or {@code null} if removed.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        return (T) items[index];
+    }
+
+    /**
+     * Returns the context snapshot of the callback at the index, if any.
+     */
+    Object contextAt(int index) {
+        return contexts == null ? null : contexts[index];
+    }
+
+    boolean isEmpty() {
+        return size == removed && (prepended == null || prepended.isEmpty());
+    }
+
+    /**
+     * Marks the start of a dispatch loop.
+     *
+     * @return the number of entries to iterate; entries added during the dispatch are left out
+     */
+    int beginDispatch() {
+        dispatching++;
+        return size;
+    }
+
+    void endDispatch() {
+        if (--dispatching > 0) return;
+        if (prepended != null) {
+            final CallbackList<T> source = prepended;
+            prepended = null;
+            prependAll(source);
+        } else if (shouldCompact()) {
+            compact();
+        }
+    }
+
+    /**
+     * Moves every entry of the source to the front of this list, along with their handles.
+     * <p>
+     * If this list is being dispatched, the move completes when the dispatch ends.
+     *
+     * @param source the list to be emptied
+     */
+    void prependAll(CallbackList<T> source) {
+        if (dispatching > 0) {
+            if (prepended == null) {
+                prepended = new CallbackList<T>();
+            }
+            prepended.prependAll(source);
+            return;
+        }
+        source.compact();
+        compact();
+        if (source.size > 0) {
+            moveToFront(source);
+        }
+        if (source.prepended != null) {
+            // Entries held aside by the source go in front of its own
+            final CallbackList<T> held = source.prepended;
+            source.prepended = null;
+            prependAll(held);
+        }
+    }
+
+    private void moveToFront(CallbackList<T> source) {
+        final int total = source.size + size;
+        final Object[] newItems = new Object[total];
+        System.arraycopy(source.items, 0, newItems, 0, source.size);
+        System.arraycopy(items, 0, newItems, source.size, size);
+
+        if (source.handles != null || handles != null) {
+            final Handle[] newHandles = new Handle[total];
+            if (source.handles != null) {
+                System.arraycopy(source.handles, 0, newHandles, 0, source.size);
+            }
+            if (handles != null) {
+                System.arraycopy(handles, 0, newHandles, source.size, size);
+            }
+            for (int i = 0; i < total; i++) {
+                if (newHandles[i] != null) {
+                    newHandles[i].list = this;
+                    newHandles[i].index = i;
+                }
+            }
+            handles = newHandles;
+        }
+        if (source.contexts != null || contexts != null) {
+            final Object[] newContexts = new Object[total];
+            if (source.contexts != null) {
+                System.arraycopy(source.contexts, 0, newContexts, 0, source.size);
+            }
+            if (contexts != null) {
+                System.arraycopy(contexts, 0, newContexts, source.size, size);
+            }
+            contexts = newContexts;
+        }
+        items = newItems;
+        size = total;
+        removed += source.removed;
+
+        if (source.dispatching > 0) {
+            // The source loop still reads its arrays, so tombstone the moved entries in place
+            for (int i = 0; i < source.size; i++) {
+                source.items[i] = null;
+                if (source.handles != null) source.handles[i] = null;
+                if (source.contexts != null) source.contexts[i] = null;
+            }
+            source.removed = source.size;
+        } else {
+            source.items = EMPTY;
+            source.handles = null;
+            source.contexts = null;
+            source.size = 0;
+            source.removed = 0;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the live callbacks.
+     *
+     * @return a new list with the callbacks not removed
+     */
+    List<T> toList() {
+        final List<T> list = prepended == null ? new ArrayList<T>(size - removed) : prepended.toList();
+        for (int i = 0; i < size; i++) {
+            final T callback = get(i);
+            if (callback != null) list.add(callback);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of live callbacks, without copying them.
+     */
+    int liveSize() {
+        return size - removed + (prepended == null ? 0 : prepended.liveSize());
+    }
+
+    /**
+     * Copies the live callbacks and their context snapshots in dispatch order.
+     *
+     * @param callbacks the array receiving the callbacks, or {@code null}
+     * @param contexts  the array receiving the context snapshots, or {@code null}
+     * @param offset    the first position written
+     * @return the position after the last one written
+     */
+    int copyTo(Object[] callbacks, Object[] contexts, int offset) {
+        int j = prepended == null ? offset : prepended.copyTo(callbacks, contexts, offset);
+        for (int i = 0; i < size; i++) {
+            if (items[i] == null) continue;
+            if (callbacks != null) callbacks[j] = items[i];
+            if (contexts != null) contexts[j] = contextAt(i);
+            j++;
+        }
+        return j;
+    }
+
+    private void remove(int index) {
+        items[index] = null;
+        handles[index] = null;
+        if (contexts != null) contexts[index] = null;
+        removed++;
+        if (dispatching == 0 && shouldCompact()) {
+            compact();
+        }
+    }
+
+    private boolean shouldCompact() {
+        return removed == size || (size >= MIN_COMPACT_SIZE && removed > size >> 1);
+    }
+
+    private void compact() {
+        if (removed == 0 || dispatching > 0) return;
+
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (items[i] == null) continue;
+            items[j] = items[i];
+            if (handles != null) {
+                final Handle handle = handles[i];
+                handles[j] = handle;
+                if (handle != null) handle.index = j;
+            }
+            if (contexts != null) contexts[j] = contexts[i];
+            j++;
+        }
+        for (int i = j; i < size; i++) {
+            items[i] = null;
+            if (handles != null) handles[i] = null;
+            if (contexts != null) contexts[i] = null;
+        }
+        size = j;
+        removed = 0;
+
+        if (items.length > MIN_COMPACT_SIZE && size < items.length >> 2) {
+            resize(size);
+        }
+    }
+
+    private void resize(int minCapacity) {
+        // Grows by half, or shrinks down to half above the size
+        final int capacity = Math.max(minCapacity, size < 2 ? 2 : size + (size >> 1));
+        final Object[] newItems = new Object[capacity];
+        System.arraycopy(items, 0, newItems, 0, size);
+        items = newItems;
+        if (handles != null) {
+            final Handle[] newHandles = new Handle[capacity];
+            System.arraycopy(handles, 0, newHandles, 0, size);
+            handles = newHandles;
+        }
+        if (contexts != null) {
+            final Object[] newContexts = new Object[capacity];
+            System.arraycopy(contexts, 0, newContexts, 0, size);
+            contexts = newContexts;
+        }
+    }
+
+    private static final class Handle implements Subscription {
+
+        private CallbackList<?> list;
+        private int index;
+
+        Handle(CallbackList<?> list, int index) {
+            this.list = list;
+            this.index = index;
+        }
+
+        @Override
+        public void unsubscribe() {
+            if (list != null) {
+                final CallbackList<?> owner = list;
+                list = null;
+                owner.remove(index);
+            }
+        }
+
+        @Override
+        public boolean isSubscribed() {
+            return list != null;
+        }
+    }
+}
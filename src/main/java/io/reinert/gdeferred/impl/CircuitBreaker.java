@@ -0,0 +1,351 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.PromiseSupplier;
+
+/**
+ * Circuit breaker guarding promise-returning operations.
+ * <p>
+ * The outcomes of the last calls are kept in a rolling window. The window is count-based: it holds the outcomes of the
+ * latest {@code windowSize} calls, no matter how long ago they settled. Calls rejected or still pending when the slow
+ * call threshold passes count as failures; a hanging call is recorded as slow at the threshold, so the breaker can
+ * open while the operation hangs, and its late outcome is ignored. Once the failures in the window reach the threshold, the breaker opens and calls
+ * fail fast with a shared {@link RejectedPromise} holding a {@link CircuitOpenException}, so the failure type must
+ * accept it. After the open period, a few probe calls are let through: the breaker closes if they all succeed, or
+ * opens again otherwise. Probes still unsettled after another open period count as failed, so a probe that never
+ * settles cannot keep the breaker half-open.
+ *
+ * <pre>
+ * <code>
+ * CircuitBreaker breaker = new CircuitBreaker(20, 10, 5000).withSlowCallThreshold(2000);
+ *
+ * breaker.call(new PromiseSupplier&lt;User, Throwable, Void&gt;() {
+ *   public Promise&lt;User, Throwable, Void&gt; get() {
+ *     return userService.load(id);
+ *   }
+ * }).done(...).fail(...);
+ * </code>
+ * </pre>
+ */
+public class CircuitBreaker {
+
+    /**
+     * State of a circuit breaker.
+     */
+    public enum State {
+
+        /**
+         * Calls go through and their outcomes are recorded.
+         */
+        CLOSED,
+
+        /**
+         * Calls fail fast.
+         */
+        OPEN,
+
+        /**
+         * A limited number of probe calls go through to test the operation.
+         */
+        HALF_OPEN
+    }
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final byte[] window;
+    private final int failureThreshold;
+    private final long openMillis;
+    private long slowCallMillis = Long.MAX_VALUE;
+    private int halfOpenProbes = 1;
+
+    private State state = State.CLOSED;
+    // Outcomes of calls started in an earlier state are ignored
+    private int generation;
+    private int windowHead;
+    private int bufferedCalls;
+    private int failedCalls;
+    private int slowCalls;
+    private int probesStarted;
+    private int probesSucceeded;
+    // Time of the last transition; open and half-open periods are measured from it
+    private long changedAt;
+    private long rejectedCalls;
+    private Promise<?, ?, ?> openRejection;
+
+    /**
+     * @param windowSize        the number of latest outcomes considered
+     * @param failureThreshold  the number of failures in the window that opens the breaker
+     * @param openMillis        the time the breaker stays open before probing
+     */
+    public CircuitBreaker(int windowSize, int failureThreshold, long openMillis) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be greater than zero");
+        }
+        if (failureThreshold < 1 || failureThreshold > windowSize) {
+            throw new IllegalArgumentException("Failure threshold must be between one and the window size");
+        }
+        if (openMillis < 0) {
+            throw new IllegalArgumentException("Open time cannot be negative");
+        }
+        this.window = new byte[windowSize];
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Counts calls still pending after the given time as failures, even if they resolve later.
+     * Each call then arms a timer on the {@link Scheduler}, cancelled when the call settles in time.
+     *
+     * @param millis the slow call threshold
+     *
+     * @return this breaker
+     */
+    public CircuitBreaker withSlowCallThreshold(long millis) {
+        slowCallMillis = millis;
+        return this;
+    }
+
+    /**
+     * Sets the number of calls let through when half-open. Defaults to one.
+     *
+     * @param probes the number of probe calls
+     *
+     * @return this breaker
+     */
+    public CircuitBreaker withHalfOpenProbes(int probes) {
+        if (probes < 1) {
+            throw new IllegalArgumentException("Probes must be greater than zero");
+        }
+        halfOpenProbes = probes;
+        return this;
+    }
+
+    /**
+     * Starts the operation if the breaker allows, tracking its outcome.
+     * <p>
+     * An exception thrown by the supplier counts as a failure and is rethrown.
+     *
+     * @param supplier  the operation
+     * @param <D>       the done type
+     * @param <F>       the fail type, accepting {@link CircuitOpenException}
+     * @param <P>       the progress type
+     *
+     * @return the operation promise, or a rejected promise if the breaker is open
+     */
+    @SuppressWarnings("unchecked")
+    public <D, F, P> Promise<D, F, P> call(PromiseSupplier<D, F, P> supplier) {
+        final int callGeneration;
+        synchronized (this) {
+            if (!permit()) {
+                rejectedCalls++;
+                if (openRejection == null) {
+                    openRejection = new RejectedPromise<Object, Object, Object>(new CircuitOpenException());
+                }
+                return (Promise<D, F, P>) openRejection;
+            }
+            callGeneration = generation;
+        }
+
+        final Call<D, F> call = new Call<D, F>(callGeneration, Scheduler.get().now());
+        final Promise<D, F, P> promise;
+        try {
+            promise = supplier.get();
+        } catch (RuntimeException e) {
+            settle(call, FAILURE);
+            throw e;
+        }
+
+        promise.always(call);
+        if (slowCallMillis != Long.MAX_VALUE) {
+            final Scheduler.Scheduled timer = Scheduler.get().schedule(call, slowCallMillis);
+            synchronized (this) {
+                if (call.recorded) {
+                    timer.cancel();
+                } else {
+                    call.slowTimer = timer;
+                }
+            }
+        }
+        return promise;
+    }
+
+    public synchronized State state() {
+        expireProbes();
+        return state;
+    }
+
+    /**
+     * Returns the number of outcomes in the window. Always zero unless closed.
+     *
+     * @return the calls buffered
+     */
+    public synchronized int bufferedCalls() {
+        return bufferedCalls;
+    }
+
+    /**
+     * Returns the number of rejected calls in the window.
+     *
+     * @return the failed calls buffered
+     */
+    public synchronized int failedCalls() {
+        return failedCalls;
+    }
+
+    /**
+     * Returns the number of slow calls in the window.
+     *
+     * @return the slow calls buffered
+     */
+    public synchronized int slowCalls() {
+        return slowCalls;
+    }
+
+    /**
+     * Returns the share of failed and slow calls in the window.
+     *
+     * @return the failure rate, between 0 and 1
+     */
+    public synchronized float failureRate() {
+        return bufferedCalls == 0 ? 0f : (float) (failedCalls + slowCalls) / bufferedCalls;
+    }
+
+    /**
+     * Returns the number of calls refused since the breaker was created.
+     *
+     * @return the calls failed fast
+     */
+    public synchronized long rejectedCalls() {
+        return rejectedCalls;
+    }
+
+    private boolean permit() {
+        expireProbes();
+        if (state == State.OPEN) {
+            if (Scheduler.get().now() - changedAt < openMillis) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted == halfOpenProbes) {
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    private void expireProbes() {
+        if (state == State.HALF_OPEN && probesStarted > 0 && Scheduler.get().now() - changedAt >= openMillis) {
+            // The late outcomes belong to an earlier generation and are ignored
+            transition(State.OPEN);
+        }
+    }
+
+    private synchronized void settle(Call<?, ?> call, byte outcome) {
+        // Either the outcome or the slow call timer, whichever comes first
+        if (call.recorded) return;
+        call.recorded = true;
+        if (call.slowTimer != null) {
+            call.slowTimer.cancel();
+            call.slowTimer = null;
+        }
+        record(call.generation, outcome);
+    }
+
+    private synchronized void record(int callGeneration, byte outcome) {
+        if (callGeneration != generation) return;
+
+        if (state == State.HALF_OPEN) {
+            if (outcome != SUCCESS) {
+                transition(State.OPEN);
+            } else if (++probesSucceeded == halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+
+        if (bufferedCalls == window.length) {
+            count(window[windowHead], -1);
+        } else {
+            bufferedCalls++;
+        }
+        window[windowHead] = outcome;
+        count(outcome, 1);
+        windowHead = windowHead + 1 == window.length ? 0 : windowHead + 1;
+
+        if (failedCalls + slowCalls >= failureThreshold) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void count(byte outcome, int delta) {
+        if (outcome == FAILURE) {
+            failedCalls += delta;
+        } else if (outcome == SLOW) {
+            slowCalls += delta;
+        }
+    }
+
+    private void transition(State newState) {
+        state = newState;
+        generation++;
+        windowHead = 0;
+        bufferedCalls = 0;
+        failedCalls = 0;
+        slowCalls = 0;
+        probesStarted = 0;
+        probesSucceeded = 0;
+        changedAt = Scheduler.get().now();
+    }
+
+    /**
+     * A call let through, recorded once: when it settles, or as slow when the threshold passes first.
+     */
+    private final class Call<D, F> implements AlwaysCallback<D, F>, Runnable {
+
+        private final int generation;
+        private final long start;
+        // Guarded by the breaker
+        private boolean recorded;
+        private Scheduler.Scheduled slowTimer;
+
+        Call(int generation, long start) {
+            this.generation = generation;
+            this.start = start;
+        }
+
+        @Override
+        public void onAlways(Promise.State state, D resolved, F rejected) {
+            if (state == Promise.State.REJECTED) {
+                settle(this, FAILURE);
+            } else {
+                settle(this, Scheduler.get().now() - start >= slowCallMillis ? SLOW : SUCCESS);
+            }
+        }
+
+        @Override
+        public void run() {
+            settle(this, SLOW);
+        }
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.BatchProgressCallback;
+import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.FailFilter;
+import io.reinert.gdeferred.FailPipe;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.ProgressFilter;
+import io.reinert.gdeferred.ProgressPipe;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.SubscribablePromise;
+import io.reinert.gdeferred.Subscription;
+
+/**
+ * Deferred with a minimal footprint, meant for large numbers of pending promises.
+ * <p>
+ * The whole state takes two fields. The outcome field holds a pending sentinel, the resolved value, or a small
+ * wrapper around the failure. The callbacks field holds the tail of a circular list of registrations, so a single
+ * slot serves every callback kind in registration order. Unsubscribed registrations are unlinked right away, or at
+ * the end of the progress notification in course when they end its loop. Callbacks are released once the deferred
+ * settles, and callbacks registered afterwards run right away without being stored.
+ * <p>
+ * Unlike {@link DeferredObject}, progress is not replayed to late callbacks, deadlines are not supported, and
+ * contexts are not propagated to callbacks.
+ *
+ * @param <D> type of DoneCallback
+ * @param <F> type of FailCallback
+ * @param <P> type of ProgressCallback
+ */
+public class CompactDeferred<D, F, P> implements Deferred<D, F, P>, SubscribablePromise<D, F, P> {
+
+    private static final Logger log = Logger.getLogger(String.valueOf(CompactDeferred.class));
+
+    private static final Object PENDING = new Object();
+
+    private static final byte DONE = 0;
+    private static final byte FAIL = 1;
+    private static final byte ALWAYS = 2;
+    private static final byte PROGRESS = 3;
+    private static final String[] KIND_NAMES = {"DoneCallback", "FailCallback", "AlwaysCallback", "ProgressCallback"};
+
+    // Returned for callbacks registered once settled, which are never stored
+    private static final Subscription SETTLED = new Subscription() {
+        @Override
+        public void unsubscribe() {
+        }
+
+        @Override
+        public boolean isSubscribed() {
+            return false;
+        }
+    };
+
+    private Object outcome = PENDING;
+    private Registration callbacks;
+
+    @Override
+    public Promise<D, F, P> always(AlwaysCallback<D, F> callback) {
+        register(ALWAYS, callback);
+        return this;
+    }
+
+    @Override
+    public Promise<D, F, P> done(DoneCallback<D> callback) {
+        register(DONE, callback);
+        return this;
+    }
+
+    @Override
+    public Promise<D, F, P> fail(FailCallback<F> callback) {
+        register(FAIL, callback);
+        return this;
+    }
+
+    @Override
+    public boolean isPending() {
+        return outcome == PENDING;
+    }
+
+    @Override
+    public boolean isRejected() {
+        return outcome instanceof Rejection;
+    }
+
+    @Override
+    public boolean isResolved() {
+        return outcome != PENDING && !(outcome instanceof Rejection);
+    }
+
+    @Override
+    public Promise<D, F, P> progress(ProgressCallback<P> callback) {
+        register(PROGRESS, callback);
+        return this;
+    }
+
+    @Override
+    public State state() {
+        return outcome == PENDING ? State.PENDING : outcome instanceof Rejection ? State.REJECTED : State.RESOLVED;
+    }
+
+    @Override
+    public Subscription subscribeAlways(AlwaysCallback<D, F> callback) {
+        return register(ALWAYS, callback);
+    }
+
+    @Override
+    public Subscription subscribeDone(DoneCallback<D> callback) {
+        return register(DONE, callback);
+    }
+
+    @Override
+    public Subscription subscribeFail(FailCallback<F> callback) {
+        return register(FAIL, callback);
+    }
+
+    @Override
+    public Subscription subscribeProgress(ProgressCallback<P> callback) {
+        return register(PROGRESS, callback);
+    }
+
+    @Override
+    public Promise<D, F, P> then(DoneCallback<D> callback) {
+        return done(callback);
+    }
+
+    @Override
+    public Promise<D, F, P> then(DoneCallback<D> doneCallback, FailCallback<F> failCallback) {
+        done(doneCallback);
+        fail(failCallback);
+        return this;
+    }
+
+    @Override
+    public Promise<D, F, P> then(DoneCallback<D> doneCallback, FailCallback<F> failCallback,
+                                 ProgressCallback<P> progressCallback) {
+        done(doneCallback);
+        fail(failCallback);
+        progress(progressCallback);
+        return this;
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter) {
+        return new FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, null, null);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter,
+                                                                   FailFilter<F, F_OUT> failFilter) {
+        return new FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, failFilter, null);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter,
+                                                                   FailFilter<F, F_OUT> failFilter,
+                                                                   ProgressFilter<P, P_OUT> progressFilter) {
+        return new FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, failFilter, progressFilter);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DonePipe<D, D_OUT, F_OUT, P_OUT> donePipe) {
+        return new PipedPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, donePipe, null, null);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DonePipe<D, D_OUT, F_OUT, P_OUT> donePipe,
+                                                                   FailPipe<F, D_OUT, F_OUT, P_OUT> failPipe) {
+        return new PipedPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, donePipe, failPipe, null);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DonePipe<D, D_OUT, F_OUT, P_OUT> donePipe,
+                                                                   FailPipe<F, D_OUT, F_OUT, P_OUT> failPipe,
+                                                                   ProgressPipe<P, D_OUT, F_OUT, P_OUT> progressPipe) {
+        return new PipedPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, donePipe, failPipe, progressPipe);
+    }
+
+    @Override
+    public Deferred<D, F, P> notify(P progress) {
+        if (outcome != PENDING) {
+            throw new IllegalStateException("Deferred object already finished, cannot notify progress");
+        }
+        final Registration tail = callbacks;
+        if (tail == null) return this;
+
+        // The tail ends the loop, so it stays linked meanwhile
+        final boolean pinned = tail.pinned;
+        tail.pinned = true;
+        try {
+            Registration node = tail;
+            do {
+                node = node.next;
+                if (node.kind == PROGRESS && node.callback != null) {
+                    invoke(node.kind, node.callback, progress);
+                }
+            } while (node != tail);
+        } finally {
+            release(tail, pinned);
+        }
+
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Deferred<D, F, P> notifyBatch(Iterable<P> progress) {
+        if (outcome != PENDING) {
+            throw new IllegalStateException("Deferred object already finished, cannot notify progress");
+        }
+        final Registration tail = callbacks;
+        if (tail == null) return this;
+
+        // Copied, since the batch may outlive the call on deferreds dispatching it later
+        final List<P> batch = new ArrayList<P>();
+        for (P value : progress) {
+            batch.add(value);
+        }
+        final boolean pinned = tail.pinned;
+        tail.pinned = true;
+        try {
+            Registration node = tail;
+            do {
+                node = node.next;
+                if (node.kind != PROGRESS || node.callback == null) continue;
+                if (node.callback instanceof BatchProgressCallback) {
+                    try {
+                        ((BatchProgressCallback<P>) node.callback).onProgressBatch(batch);
+                    } catch (Exception e) {
+                        log.log(Level.SEVERE, "An uncaught exception occurred in a ProgressCallback", e);
+                    }
+                    continue;
+                }
+                for (P value : batch) {
+                    // Unsubscribed by an earlier value
+                    if (node.callback == null) break;
+                    invoke(node.kind, node.callback, value);
+                }
+            } while (node != tail);
+        } finally {
+            release(tail, pinned);
+        }
+
+        return this;
+    }
+
+    @Override
+    public Promise<D, F, P> promise() {
+        return this;
+    }
+
+    @Override
+    public Deferred<D, F, P> reject(F reject) {
+        if (outcome != PENDING) {
+            throw new IllegalStateException("Deferred object already finished, cannot reject again");
+        }
+        outcome = new Rejection(reject);
+        settle();
+        return this;
+    }
+
+    @Override
+    public Deferred<D, F, P> resolve(D resolve) {
+        if (outcome != PENDING) {
+            throw new IllegalStateException("Deferred object already finished, cannot resolve again");
+        }
+        outcome = resolve;
+        settle();
+        return this;
+    }
+
+    private Subscription register(byte kind, Object callback) {
+        if (outcome != PENDING) {
+            // Settled: run right away and keep nothing
+            if (kind != PROGRESS) {
+                invoke(kind, callback, null);
+            }
+            return SETTLED;
+        }
+
+        final Registration registration = new Registration(kind, callback);
+        final Registration tail = callbacks;
+        if (tail == null) {
+            registration.next = registration;
+            registration.prev = registration;
+        } else {
+            registration.next = tail.next;
+            registration.prev = tail;
+            tail.next.prev = registration;
+            tail.next = registration;
+        }
+        callbacks = registration;
+        return registration;
+    }
+
+    /**
+     * Ends a loop over the registrations, unlinking its tail if unsubscribed meanwhile.
+     */
+    private void release(Registration tail, boolean pinned) {
+        tail.pinned = pinned;
+        if (!pinned && tail.callback == null && outcome == PENDING) {
+            tail.unlink();
+        }
+    }
+
+    private void settle() {
+        final Registration tail = callbacks;
+        callbacks = null;
+        if (tail == null) return;
+
+        // Done and fail callbacks first, then always callbacks, as in DeferredObject
+        Registration node = tail;
+        do {
+            node = node.next;
+            if (node.kind != ALWAYS && node.kind != PROGRESS && node.callback != null) {
+                invoke(node.kind, node.callback, null);
+            }
+        } while (node != tail);
+        do {
+            node = node.next;
+            if (node.kind == ALWAYS && node.callback != null) {
+                invoke(node.kind, node.callback, null);
+            }
+        } while (node != tail);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void invoke(byte kind, Object callback, P progress) {
+        final Object current = outcome;
+        try {
+            switch (kind) {
+                case DONE:
+                    if (!(current instanceof Rejection)) {
+                        ((DoneCallback<D>) callback).onDone((D) current);
+                    }
+                    break;
+                case FAIL:
+                    if (current instanceof Rejection) {
+                        ((FailCallback<F>) callback).onFail((F) ((Rejection) current).reason);
+                    }
+                    break;
+                case ALWAYS:
+                    if (current instanceof Rejection) {
+                        ((AlwaysCallback<D, F>) callback).onAlways(State.REJECTED, null,
+                                (F) ((Rejection) current).reason);
+                    } else {
+                        ((AlwaysCallback<D, F>) callback).onAlways(State.RESOLVED, (D) current, null);
+                    }
+                    break;
+                default:
+                    ((ProgressCallback<P>) callback).onProgress(progress);
+                    break;
+            }
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a " + KIND_NAMES[kind], e);
+        }
+    }
+
+    private static final class Rejection {
+
+        private final Object reason;
+
+        Rejection(Object reason) {
+            this.reason = reason;
+        }
+    }
+
+    private final class Registration implements Subscription {
+
+        private final byte kind;
+        private boolean pinned;
+        private Object callback;
+        private Registration next;
+        private Registration prev;
+
+        Registration(byte kind, Object callback) {
+            this.kind = kind;
+            this.callback = callback;
+        }
+
+        @Override
+        public void unsubscribe() {
+            if (callback == null) return;
+            callback = null;
+            // Once settled the whole list is dropped anyway
+            if (outcome == PENDING && !pinned) {
+                unlink();
+            }
+        }
+
+        /**
+         * Removes this registration from the list. Its next link is kept, so a loop standing on it can go on.
+         */
+        private void unlink() {
+            if (next == this) {
+                callbacks = null;
+                return;
+            }
+            prev.next = next;
+            next.prev = prev;
+            if (callbacks == this) {
+                callbacks = prev;
+            }
+        }
+
+        @Override
+        public boolean isSubscribed() {
+            return callback != null;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reinert.gdeferred.Deferred;
+
+/**
+ * Deferred resolved once a given number of parties have arrived, or rejected by the first party to fail.
+ * <p>
+ * Parties check in with {@link #arrive()} instead of handing back promises, so no deferred is allocated per party.
+ * The remaining count is a single atomic counter, and is notified as progress on each arrival; late progress
+ * callbacks receive the current count. Notifications are made under a lock from a fresh read of the counter, so
+ * concurrent arrivals notify a decreasing count, possibly skipping values. Arrivals and failures after the deferred
+ * has settled are ignored, including when it was settled directly with {@link #resolve} or {@link #reject}, or by a
+ * deadline.
+ * <p>
+ * Parties report a failure with {@link #abort(Object)}. It is not named {@code fail}, which would overload
+ * {@link #fail(io.reinert.gdeferred.FailCallback)} and make calls such as {@code fail(null)} ambiguous.
+ *
+ * <pre>
+ * <code>
+ * final CountdownDeferred&lt;Throwable&gt; ready = new CountdownDeferred&lt;Throwable&gt;(3);
+ *
+ * ready.progress(new ProgressCallback&lt;Integer&gt;() {
+ *   public void onProgress(Integer remaining) {
+ *     view.setPending(remaining);
+ *   }
+ * }).done(...);
+ *
+ * loader.load(config, new Callback() {
+ *   public void onLoaded() {
+ *     ready.arrive();
+ *   }
+ *   public void onError(Throwable error) {
+ *     ready.abort(error);
+ *   }
+ * });
+ * </code>
+ * </pre>
+ *
+ * @param <F> Type of the failure
+ */
+public class CountdownDeferred<F> extends DeferredObject<Void, F, Integer> {
+
+    private static final int FAILED = -1;
+
+    private final AtomicInteger remaining;
+    private final Object lock = new Object();
+    // Guarded by lock
+    private int notified;
+
+    /**
+     * @param parties the number of arrivals needed to resolve
+     */
+    public CountdownDeferred(int parties) {
+        if (parties < 0) {
+            throw new IllegalArgumentException("Parties cannot be negative");
+        }
+        this.remaining = new AtomicInteger(parties);
+        this.notified = parties;
+
+        if (parties == 0) {
+            resolve(null);
+        } else {
+            notify(parties);
+        }
+    }
+
+    /**
+     * Counts one party in. The last one resolves the deferred.
+     *
+     * @return {@code true} if the arrival was counted, {@code false} if the deferred had already settled
+     */
+    public boolean arrive() {
+        int current;
+        do {
+            current = remaining.get();
+            if (current <= 0) return false;
+        } while (!remaining.compareAndSet(current, current - 1));
+
+        // Dispatch is serialized: arrivals may come from several threads, and may reach the lock out of order
+        synchronized (lock) {
+            if (current == 1) {
+                // Unless settled directly or by a deadline meanwhile
+                if (isPending()) resolve(null);
+            } else {
+                final int count = remaining.get();
+                if (count > 0 && count < notified && isPending()) {
+                    notified = count;
+                    notify(count);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rejects the deferred, unless every party has already arrived.
+     *
+     * @param reason the failure
+     *
+     * @return {@code true} if the deferred was rejected, {@code false} if it had already settled
+     */
+    public boolean abort(F reason) {
+        int current;
+        do {
+            current = remaining.get();
+            if (current <= 0) return false;
+        } while (!remaining.compareAndSet(current, FAILED));
+
+        synchronized (lock) {
+            if (isPending()) reject(reason);
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the deferred right away. Later arrivals are ignored.
+     *
+     * @param resolve always {@code null}
+     *
+     * @return this deferred
+     */
+    @Override
+    public Deferred<Void, F, Integer> resolve(Void resolve) {
+        synchronized (lock) {
+            remaining.set(0);
+            return super.resolve(resolve);
+        }
+    }
+
+    /**
+     * Rejects the deferred right away. Later arrivals are ignored.
+     *
+     * @param reject the failure
+     *
+     * @return this deferred
+     */
+    @Override
+    public Deferred<Void, F, Integer> reject(F reject) {
+        synchronized (lock) {
+            remaining.set(FAILED);
+            return super.reject(reject);
+        }
+    }
+
+    @Override
+    protected void expire() {
+        synchronized (lock) {
+            remaining.set(FAILED);
+            super.expire();
+        }
+    }
+
+    /**
+     * Returns the number of parties yet to arrive.
+     *
+     * @return the remaining count, or {@code 0} once the deferred has settled
+     */
+    public int remaining() {
+        return Math.max(0, remaining.get());
+    }
+}
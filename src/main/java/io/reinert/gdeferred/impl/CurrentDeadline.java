@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+/**
+ * Deadline of the pipe running on the current thread, read by {@link Deadline#current()}.
+ * <p>
+ * In GWT, the super-sourced version keeps it in a static field.
+ */
+final class CurrentDeadline {
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<Deadline>();
+
+    private CurrentDeadline() {
+    }
+
+    static Deadline get() {
+        return current.get();
+    }
+
+    /**
+     * Makes the deadline current until the returned one is entered back.
+     *
+     * @param deadline the deadline of the running pipe, or {@code null}
+     *
+     * @return the deadline current so far
+     */
+    static Deadline enter(Deadline deadline) {
+        final Deadline previous = current.get();
+        if (deadline == null) {
+            current.remove();
+        } else {
+            current.set(deadline);
+        }
+        return previous;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.io.Serializable;
+
+/**
+ * Absolute point in time after which a promise is rejected.
+ * <p>
+ * A deadline set on a promise is inherited by the promises derived from it with {@code then(...)}, so producers
+ * can check it and skip doomed work. Producers called from a pipe read it with {@link #current()}.
+ *
+ * @see DeferredObject#withDeadline(Deadline)
+ */
+public final class Deadline implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long time;
+
+    /**
+     * @param time the deadline, in milliseconds of the {@link Scheduler} clock
+     */
+    public Deadline(long time) {
+        this.time = time;
+    }
+
+    /**
+     * Creates a deadline the given number of milliseconds from now.
+     *
+     * @param millis the time budget
+     *
+     * @return the deadline
+     */
+    public static Deadline in(long millis) {
+        return new Deadline(Scheduler.get().now() + millis);
+    }
+
+    /**
+     * Returns the deadline of the pipe running on the current thread, so that the promise it returns can be given
+     * the same budget.
+     *
+     * @return the deadline of the stage whose pipe is running, or {@code null} if there is none
+     */
+    public static Deadline current() {
+        return CurrentDeadline.get();
+    }
+
+    public long time() {
+        return time;
+    }
+
+    /**
+     * Returns the time left until the deadline.
+     *
+     * @return the remaining milliseconds, or {@code 0} if expired
+     */
+    public long remaining() {
+        return Math.max(0, time - Scheduler.get().now());
+    }
+
+    public boolean isExpired() {
+        return Scheduler.get().now() >= time;
+    }
+
+    boolean isBefore(Deadline other) {
+        return other == null || time < other.time;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{time=" + time + '}';
+    }
+}
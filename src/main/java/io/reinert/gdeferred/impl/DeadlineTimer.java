@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timer of a {@link Scheduler}, rejecting the promises whose deadline has passed.
+ * <p>
+ * Each scheduler owns one, so the heap and the armed time never outlive a scheduler swap: promises armed before the
+ * swap stay on the old scheduler, and new ones go to the new scheduler.
+ * <p>
+ * Pending promises are kept in a binary min-heap ordered by deadline; each promise stores its own heap position,
+ * so it is removed in logarithmic time when settled. Only the earliest deadline is armed in the platform timer.
+ * <p>
+ * Producers and the timer race to settle an armed promise. Both claim it under the timer lock, and only the first
+ * claim succeeds: a producer's claim takes the promise off the heap, while the timer's marks it as expired.
+ */
+final class DeadlineTimer {
+
+    private final Scheduler scheduler;
+    private final OneShotTimer timer;
+
+    private DeferredObject<?, ?, ?>[] heap = new DeferredObject<?, ?, ?>[16];
+    private int size;
+    private long armedAt = Long.MAX_VALUE;
+
+    DeadlineTimer(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        this.timer = new OneShotTimer(scheduler, new Runnable() {
+            @Override
+            public void run() {
+                expire();
+            }
+        });
+    }
+
+    /**
+     * Arms the deadline of the promise, or re-arms it if already armed here.
+     *
+     * @param promise the pending promise
+     */
+    synchronized void add(DeferredObject<?, ?, ?> promise) {
+        if (promise.expired) return;
+        if (promise.timerIndex >= 0) {
+            removeAt(promise.timerIndex);
+        }
+        if (size == heap.length) {
+            final DeferredObject<?, ?, ?>[] grown = new DeferredObject<?, ?, ?>[size * 2];
+            System.arraycopy(heap, 0, grown, 0, size);
+            heap = grown;
+        }
+        promise.timerIndex = size;
+        heap[size++] = promise;
+        siftUp(promise.timerIndex);
+        arm();
+    }
+
+    /**
+     * Takes an armed promise off the timer, so that the caller may settle it.
+     *
+     * @param promise the promise to be settled
+     *
+     * @return {@code true} if claimed, {@code false} if the timer has claimed it first to reject it
+     */
+    synchronized boolean claim(DeferredObject<?, ?, ?> promise) {
+        if (promise.expired) return false;
+        if (promise.timerIndex >= 0) {
+            removeAt(promise.timerIndex);
+            if (size == 0) arm();
+        }
+        return true;
+    }
+
+    private void expire() {
+        final List<DeferredObject<?, ?, ?>> expired = new ArrayList<DeferredObject<?, ?, ?>>();
+        synchronized (this) {
+            armedAt = Long.MAX_VALUE;
+            final long now = scheduler.now();
+            while (size > 0 && heap[0].deadline.time() <= now) {
+                heap[0].expired = true;
+                expired.add(heap[0]);
+                removeAt(0);
+            }
+            arm();
+        }
+        // Reject outside the lock: callbacks may set other deadlines
+        for (DeferredObject<?, ?, ?> promise : expired) {
+            promise.expire();
+        }
+    }
+
+    private void arm() {
+        if (size == 0) {
+            timer.cancel();
+            armedAt = Long.MAX_VALUE;
+            return;
+        }
+        final long next = heap[0].deadline.time();
+        if (next < armedAt) {
+            armedAt = next;
+            timer.schedule(next - scheduler.now());
+        }
+    }
+
+    private void removeAt(int index) {
+        final DeferredObject<?, ?, ?> removed = heap[index];
+        removed.timerIndex = -1;
+        size--;
+        if (index != size) {
+            heap[index] = heap[size];
+            heap[index].timerIndex = index;
+            heap[size] = null;
+            siftDown(index);
+            siftUp(index);
+        } else {
+            heap[size] = null;
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (time(parent) <= time(index)) break;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            final int left = 2 * index + 1;
+            if (left >= size) break;
+            final int right = left + 1;
+            final int child = right < size && time(right) < time(left) ? right : left;
+            if (time(index) <= time(child)) break;
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private long time(int index) {
+        return heap[index].deadline.time();
+    }
+
+    private void swap(int i, int j) {
+        final DeferredObject<?, ?, ?> tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+        heap[i].timerIndex = i;
+        heap[j].timerIndex = j;
+    }
+}
@@ -16,8 +16,17 @@
  */
 package io.reinert.gdeferred.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reinert.gdeferred.AlwaysCallback;
 import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
 import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.Subscription;
+import io.reinert.gdeferred.trace.Span;
 
 /**
  * An implementation of {@link io.reinert.gdeferred.Deferred} interface.
@@ -47,41 +56,196 @@ import io.reinert.gdeferred.Promise;
  */
 public class DeferredObject<D, F, P> extends AbstractPromise<D, F, P> implements Deferred<D, F, P> {
 
+    private DeferredObject<D, F, P> link;
+
+    // Package-private for DeadlineTimer, which guards the heap position and the expired flag
+    Deadline deadline;
+    int timerIndex = -1;
+    DeadlineTimer deadlineTimer;
+    volatile boolean expired;
+
+    /**
+     * Span of this stage, or {@code null} if not traced.
+     */
+    protected Span span;
+
+    public DeferredObject() {
+    }
+
+    /**
+     * Creates a deferred that replays the last {@code progressReplay} progress values to late progress callbacks.
+     *
+     * @param progressReplay the number of progress values kept for replay; {@code 0} disables the replay
+     */
+    public DeferredObject(int progressReplay) {
+        super(progressReplay);
+    }
+
+    @Override
+    public Promise<D, F, P> always(AlwaysCallback<D, F> callback) {
+        if (link != null) {
+            root().always(callback);
+            return this;
+        }
+        return super.always(callback);
+    }
+
+    @Override
+    public Promise<D, F, P> done(DoneCallback<D> callback) {
+        if (link != null) {
+            root().done(callback);
+            return this;
+        }
+        return super.done(callback);
+    }
+
+    @Override
+    public Promise<D, F, P> fail(FailCallback<F> callback) {
+        if (link != null) {
+            root().fail(callback);
+            return this;
+        }
+        return super.fail(callback);
+    }
+
+    @Override
+    protected void listen(StageListener<D, F, P> listener) {
+        if (link != null) {
+            root().listen(listener);
+            return;
+        }
+        super.listen(listener);
+    }
+
+    @Override
+    public boolean isPending() {
+        return link != null ? root().isPending() : super.isPending();
+    }
+
+    @Override
+    public boolean isRejected() {
+        return link != null ? root().isRejected() : super.isRejected();
+    }
+
+    @Override
+    public boolean isResolved() {
+        return link != null ? root().isResolved() : super.isResolved();
+    }
+
+    @Override
+    public Promise<D, F, P> progress(ProgressCallback<P> callback) {
+        if (link != null) {
+            root().progress(callback);
+            return this;
+        }
+        return super.progress(callback);
+    }
+
+    @Override
+    public State state() {
+        return link != null ? root().state() : super.state();
+    }
+
+    @Override
+    public Subscription subscribeAlways(AlwaysCallback<D, F> callback) {
+        return link != null ? root().subscribeAlways(callback) : super.subscribeAlways(callback);
+    }
+
+    @Override
+    public Subscription subscribeDone(DoneCallback<D> callback) {
+        return link != null ? root().subscribeDone(callback) : super.subscribeDone(callback);
+    }
+
+    @Override
+    public Subscription subscribeFail(FailCallback<F> callback) {
+        return link != null ? root().subscribeFail(callback) : super.subscribeFail(callback);
+    }
+
+    @Override
+    public Subscription subscribeProgress(ProgressCallback<P> callback) {
+        return link != null ? root().subscribeProgress(callback) : super.subscribeProgress(callback);
+    }
+
     @Override
     public Deferred<D, F, P> notify(final P progress) {
+        if (link != null) {
+            root().notify(progress);
+            return this;
+        }
+
+        if (expired) return this;
         if (!isPending()) {
             throw new IllegalStateException("Deferred object already finished, cannot notify progress");
         }
 
+        recordProgress(progress);
         triggerProgress(progress);
 
         return this;
     }
 
+    @Override
+    public Deferred<D, F, P> notifyBatch(Iterable<P> progress) {
+        if (link != null) {
+            root().notifyBatch(progress);
+            return this;
+        }
+
+        if (expired) return this;
+        if (!isPending()) {
+            throw new IllegalStateException("Deferred object already finished, cannot notify progress");
+        }
+
+        // Copied, since the batch may outlive the call on deferreds dispatching it later
+        final List<P> batch = new ArrayList<P>();
+        for (P value : progress) {
+            batch.add(value);
+        }
+        if (batch.isEmpty()) return this;
+
+        for (P value : batch) {
+            recordProgress(value);
+        }
+        triggerProgressBatch(batch);
+
+        return this;
+    }
+
     public Promise<D, F, P> promise() {
         return this;
     }
 
     @Override
     public Deferred<D, F, P> reject(final F reject) {
+        if (link != null) {
+            root().reject(reject);
+            return this;
+        }
+
+        if (deadlineTimer != null && !deadlineTimer.claim(this)) {
+            // Rejected by the deadline: producers finishing late are ignored
+            return this;
+        }
         if (!isPending()) {
             throw new IllegalStateException("Deferred object already finished, cannot reject again");
         }
 
-        state = State.REJECTED;
-        rejectResult = reject;
-
-        try {
-            triggerFail(reject);
-        } finally {
-            triggerAlways(null, reject);
-        }
+        settleRejected(reject);
 
         return this;
     }
 
     @Override
     public Deferred<D, F, P> resolve(final D resolve) {
+        if (link != null) {
+            root().resolve(resolve);
+            return this;
+        }
+
+        if (deadlineTimer != null && !deadlineTimer.claim(this)) {
+            // Rejected by the deadline: producers finishing late are ignored
+            return this;
+        }
         if (!isPending()) {
             throw new IllegalStateException("Deferred object already finished, cannot resolve again");
         }
@@ -94,7 +258,167 @@ public class DeferredObject<D, F, P> extends AbstractPromise<D, F, P> implements
         } finally {
             triggerAlways(resolve, null);
         }
+        if (span != null) {
+            span.settled(State.RESOLVED);
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the deadline of this deferred, either set or inherited.
+     *
+     * @return the deadline, or {@code null} if there is none
+     */
+    public Deadline deadline() {
+        return link != null ? root().deadline : deadline;
+    }
+
+    /**
+     * Rejects this deferred with a {@link DeadlineExceededException} if still pending when the deadline passes.
+     * <p>
+     * An earlier deadline already set is kept. The deadline is inherited by the promises derived with
+     * {@code then(...)}. Once rejected by the deadline, later attempts to settle or notify this deferred are ignored,
+     * so that producers finishing late do not fail. The failure type must accept the exception.
+     * <p>
+     * The rejection runs where the {@link Scheduler} runs its tasks: on the JVM, the platform scheduler's timer
+     * thread. Settling races with it safely, since the timer and the producer claim the deferred under a lock and
+     * only the winner settles it, but the failure callbacks then run on the timer thread. Deferreds confining their
+     * state to one thread, like {@code EventLoopDeferred}, marshal the rejection there. The deadline should be set
+     * before the deferred is shared with producers on other threads.
+     *
+     * @param deadline the deadline
+     *
+     * @return this deferred
+     */
+    public DeferredObject<D, F, P> withDeadline(Deadline deadline) {
+        if (link != null) {
+            root().withDeadline(deadline);
+            return this;
+        }
 
+        if (deadline.isBefore(this.deadline)) {
+            this.deadline = deadline;
+        }
+        if (isPending()) {
+            // Kept on the timer armed first, even if the scheduler was swapped since
+            if (deadlineTimer == null) {
+                deadlineTimer = Scheduler.get().deadlines;
+            }
+            deadlineTimer.add(this);
+        }
         return this;
     }
+
+    /**
+     * Same as {@code withDeadline(Deadline.in(millis))}.
+     *
+     * @param millis the time budget
+     *
+     * @return this deferred
+     */
+    public DeferredObject<D, F, P> withTimeout(long millis) {
+        return withDeadline(Deadline.in(millis));
+    }
+
+    /**
+     * Names this stage in its tracing span. Does nothing if the stage is not traced.
+     *
+     * @param name the stage name
+     *
+     * @return this deferred
+     *
+     * @see io.reinert.gdeferred.trace.Tracing
+     */
+    public DeferredObject<D, F, P> named(String name) {
+        if (span != null) {
+            span.setName(name);
+        }
+        return this;
+    }
+
+    /**
+     * Takes the deadline of the parent promise, if any, without arming the timer.
+     * Promises that settle together with their parent are covered by the parent's timer.
+     *
+     * @param parent the upstream promise
+     */
+    protected void inheritDeadline(Promise<?, ?, ?> parent) {
+        if (parent instanceof DeferredObject) {
+            deadline = ((DeferredObject<?, ?, ?>) parent).deadline();
+        }
+    }
+
+    /**
+     * Rejects this deferred with a {@link DeadlineExceededException}, once claimed by the deadline timer.
+     * <p>
+     * Called on the thread running the {@link Scheduler} tasks. Subclasses confining their state to one thread
+     * override it to run the rejection there.
+     */
+    @SuppressWarnings("unchecked")
+    protected void expire() {
+        settleRejected((F) new DeadlineExceededException(deadline));
+    }
+
+    private void settleRejected(F reject) {
+        state = State.REJECTED;
+        rejectResult = reject;
+
+        try {
+            triggerFail(reject);
+        } finally {
+            triggerAlways(null, reject);
+        }
+        if (span != null) {
+            span.settled(State.REJECTED);
+        }
+    }
+
+    /**
+     * Turns this deferred into a forwarder of the target's root, as in promise "unwrapping".
+     * <p>
+     * Callbacks registered so far are moved to the root, and every later call is delegated to it. Since the root
+     * holds no reference back, a chain of forwarders does not stay reachable from the innermost pending promise.
+     * <p>
+     * Traced stages are never linked, so that their spans settle.
+     *
+     * @param target the deferred that will settle in place of this one
+     *
+     * @return {@code true} if linked, {@code false} if either side is not pending or they already share the root
+     */
+    protected boolean linkTo(DeferredObject<D, F, P> target) {
+        final DeferredObject<D, F, P> root = target.root();
+        if (link != null || span != null || root == this || !isPending() || !root.isPending()) {
+            return false;
+        }
+
+        if (deadlineTimer != null && !deadlineTimer.claim(this)) {
+            return false;
+        }
+
+        transferCallbacks(root);
+        if (deadlineTimer != null) {
+            root.withDeadline(deadline);
+        }
+        link = root;
+        return true;
+    }
+
+    /**
+     * Returns the deferred that actually holds the state, compressing the link path on the way.
+     *
+     * @return the root of this deferred
+     */
+    protected DeferredObject<D, F, P> root() {
+        if (link == null) {
+            return this;
+        }
+
+        DeferredObject<D, F, P> root = link;
+        while (root.link != null) {
+            root = root.link;
+        }
+        link = root;
+        return root;
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.reinert.gdeferred.DeferredStream;
+import io.reinert.gdeferred.StreamCallback;
+import io.reinert.gdeferred.StreamPromise;
+import io.reinert.gdeferred.StreamSubscription;
+
+/**
+ * An implementation of {@link io.reinert.gdeferred.DeferredStream} interface with a bounded ring buffer.
+ * <p>
+ * Items are delivered in emission order. Deliveries triggered from inside a callback are queued and drained by the
+ * outermost call, so the stack does not grow with the number of items. An exception thrown by
+ * {@link StreamCallback#onItem} is logged; the item counts as delivered and the stream goes on.
+ *
+ * @param <T> Type of the items
+ * @param <F> Type of the failure
+ */
+public class DeferredStreamObject<T, F> extends AbstractStreamPromise<T, F> implements DeferredStream<T, F> {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final Logger log = Logger.getLogger(String.valueOf(DeferredStreamObject.class));
+
+    private final int capacity;
+    private Object[] buffer;
+    private int head;
+    private int size;
+
+    private StreamCallback<T, F> subscriber;
+    private Runnable demandCallback;
+    private long demand;
+
+    private boolean completed;
+    private boolean failed;
+    private F failure;
+    private boolean terminated;
+    private boolean cancelled;
+
+    private boolean draining;
+    private boolean signaling;
+    private boolean demandChanged;
+
+    public DeferredStreamObject() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a stream buffering at most {@code capacity} items beyond the subscriber's demand.
+     *
+     * @param capacity the buffer size
+     */
+    public DeferredStreamObject(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public DeferredStream<T, F> complete() {
+        if (completed || failed) {
+            throw new IllegalStateException("Stream already finished, cannot complete again");
+        }
+
+        completed = true;
+        drain();
+        return this;
+    }
+
+    @Override
+    public boolean emit(T item) {
+        if (completed || failed) {
+            throw new IllegalStateException("Stream already finished, cannot emit");
+        }
+        if (cancelled) return false;
+
+        if (capacity == 0) {
+            // Nothing to buffer: deliver directly while there is demand
+            if (subscriber == null || demand == 0 || draining) return false;
+            deliver(item);
+        } else {
+            if (size == capacity) return false;
+            if (buffer == null) {
+                buffer = new Object[capacity];
+            }
+            buffer[(head + size) % capacity] = item;
+            size++;
+            drain();
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the subscriber has requested items not delivered yet.
+     *
+     * @return the number of items the subscriber is waiting for
+     */
+    public long demand() {
+        return demand;
+    }
+
+    @Override
+    public DeferredStream<T, F> onDemand(Runnable callback) {
+        this.demandCallback = callback;
+        return this;
+    }
+
+    @Override
+    public StreamPromise<T, F> promise() {
+        return this;
+    }
+
+    @Override
+    public DeferredStream<T, F> reject(F reason) {
+        if (completed || failed) {
+            throw new IllegalStateException("Stream already finished, cannot reject");
+        }
+
+        failed = true;
+        failure = reason;
+        clear();
+        drain();
+        return this;
+    }
+
+    @Override
+    public StreamSubscription subscribe(StreamCallback<T, F> callback) {
+        if (subscriber != null) {
+            throw new IllegalStateException("Stream already has a subscriber");
+        }
+
+        subscriber = callback;
+        drain();
+        return new StreamSubscription() {
+            @Override
+            public void request(long n) {
+                DeferredStreamObject.this.request(n);
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                clear();
+            }
+        };
+    }
+
+    private void request(long n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("The number of items requested must be positive");
+        }
+        if (cancelled || terminated) return;
+
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        drain();
+        signalDemand();
+    }
+
+    private void signalDemand() {
+        if (signaling) {
+            demandChanged = true;
+            return;
+        }
+
+        signaling = true;
+        try {
+            do {
+                demandChanged = false;
+                if (demandCallback == null || demand == 0 || cancelled || completed || failed) return;
+                demandCallback.run();
+            } while (demandChanged);
+        } finally {
+            signaling = false;
+        }
+    }
+
+    private void deliver(T item) {
+        draining = true;
+        try {
+            demand--;
+            triggerItem(item);
+        } finally {
+            draining = false;
+        }
+        drain();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        if (draining || subscriber == null || terminated) return;
+
+        draining = true;
+        try {
+            while (!cancelled) {
+                if (failed) {
+                    terminated = true;
+                    subscriber.onFail(failure);
+                    return;
+                }
+                if (size > 0 && demand > 0) {
+                    final T item = (T) buffer[head];
+                    buffer[head] = null;
+                    head = (head + 1) % capacity;
+                    size--;
+                    demand--;
+                    triggerItem(item);
+                    continue;
+                }
+                if (size == 0 && completed) {
+                    terminated = true;
+                    subscriber.onComplete();
+                }
+                return;
+            }
+        } finally {
+            draining = false;
+        }
+    }
+
+    private void triggerItem(T item) {
+        try {
+            subscriber.onItem(item);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a StreamCallback", e);
+        }
+    }
+
+    private void clear() {
+        while (size > 0) {
+            buffer[head] = null;
+            head = (head + 1) % capacity;
+            size--;
+        }
+    }
+}
@@ -16,13 +16,14 @@
  */
 package io.reinert.gdeferred.impl;
 
-import io.reinert.gdeferred.DoneCallback;
+import java.util.ArrayList;
+import java.util.List;
+
 import io.reinert.gdeferred.DoneFilter;
-import io.reinert.gdeferred.FailCallback;
 import io.reinert.gdeferred.FailFilter;
-import io.reinert.gdeferred.ProgressCallback;
 import io.reinert.gdeferred.ProgressFilter;
 import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.trace.Tracing;
 
 /**
  * Promise that handle filtering.
@@ -47,24 +48,51 @@ public class FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT> extends DeferredObjec
         this.doneFilter = doneFilter == null ? DoneFilter.NO_OP : doneFilter;
         this.failFilter = failFilter == null ? FailFilter.NO_OP : failFilter;
         this.progressFilter = progressFilter == null ? ProgressFilter.NO_OP : progressFilter;
+        inheritDeadline(promise);
+        span = Tracing.startSpan("filter");
 
-        promise.done(new DoneCallback<D>() {
+        new StageListener<D, F, P>() {
             @Override
             public void onDone(D result) {
-                FilteredPromise.this.resolve(FilteredPromise.this.doneFilter.filterDone(result));
+                if (span != null) span.upstreamSettled(State.RESOLVED);
+                final D_OUT filtered;
+                try {
+                    filtered = FilteredPromise.this.doneFilter.filterDone(result);
+                } catch (RuntimeException e) {
+                    if (span != null) span.failed(e);
+                    throw e;
+                }
+                if (span != null) span.executed();
+                FilteredPromise.this.resolve(filtered);
             }
-        }).fail(new FailCallback<F>() {
 
             @Override
             public void onFail(F result) {
-                FilteredPromise.this.reject(FilteredPromise.this.failFilter.filterFail(result));
+                if (span != null) span.upstreamSettled(State.REJECTED);
+                final F_OUT filtered;
+                try {
+                    filtered = FilteredPromise.this.failFilter.filterFail(result);
+                } catch (RuntimeException e) {
+                    if (span != null) span.failed(e);
+                    throw e;
+                }
+                if (span != null) span.executed();
+                FilteredPromise.this.reject(filtered);
             }
-        }).progress(new ProgressCallback<P>() {
 
             @Override
             public void onProgress(P progress) {
                 FilteredPromise.this.notify(FilteredPromise.this.progressFilter.filterProgress(progress));
             }
-        });
+
+            @Override
+            public void onProgressBatch(List<P> progress) {
+                final List<P_OUT> filtered = new ArrayList<P_OUT>(progress.size());
+                for (P value : progress) {
+                    filtered.add(FilteredPromise.this.progressFilter.filterProgress(value));
+                }
+                FilteredPromise.this.notifyBatch(filtered);
+            }
+        }.listenTo(promise);
     }
 }
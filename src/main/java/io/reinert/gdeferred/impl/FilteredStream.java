@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.StreamCallback;
+import io.reinert.gdeferred.StreamPromise;
+import io.reinert.gdeferred.StreamSubscription;
+
+/**
+ * Stream that skips the items of another stream not accepted by a predicate.
+ * Each skipped item is replaced by a request for one more item, so the subscriber's demand is preserved.
+ * If the predicate throws, the source is cancelled and the subscriber fails with the exception.
+ *
+ * @param <T> Type of the items
+ * @param <F> Type of the failure
+ */
+public class FilteredStream<T, F> extends AbstractStreamPromise<T, F> {
+
+    private final StreamPromise<T, F> stream;
+    private final DoneFilter<T, Boolean> predicate;
+
+    public FilteredStream(StreamPromise<T, F> stream, DoneFilter<T, Boolean> predicate) {
+        this.stream = stream;
+        this.predicate = predicate;
+    }
+
+    @Override
+    public StreamSubscription subscribe(final StreamCallback<T, F> callback) {
+        final Forwarder forwarder = new Forwarder(callback);
+        forwarder.subscription = stream.subscribe(forwarder);
+        return forwarder.subscription;
+    }
+
+    private class Forwarder implements StreamCallback<T, F> {
+
+        private final StreamCallback<T, F> callback;
+        private StreamSubscription subscription;
+        private boolean failed;
+
+        Forwarder(StreamCallback<T, F> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onItem(T item) {
+            if (failed) return;
+
+            final boolean accepted;
+            try {
+                accepted = Boolean.TRUE.equals(predicate.filterDone(item));
+            } catch (Exception e) {
+                failed = true;
+                subscription.cancel();
+                callback.onFail((F) e);
+                return;
+            }
+            if (accepted) {
+                callback.onItem(item);
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!failed) callback.onComplete();
+        }
+
+        @Override
+        public void onFail(F reason) {
+            if (!failed) callback.onFail(reason);
+        }
+    }
+}
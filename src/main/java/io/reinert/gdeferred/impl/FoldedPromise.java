@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.Accumulator;
+import io.reinert.gdeferred.StreamCallback;
+import io.reinert.gdeferred.StreamPromise;
+import io.reinert.gdeferred.StreamSubscription;
+
+/**
+ * Promise of the value accumulated over the items of a stream.
+ * <p>
+ * Items are requested in batches and folded as they arrive; only the accumulated value is kept.
+ * The number of items folded is notified as progress after each batch.
+ * If the accumulator throws, the stream is cancelled and the promise is rejected with the exception.
+ *
+ * @param <T> Type of the items
+ * @param <R> Type of the accumulated value
+ * @param <F> Type of the failure
+ */
+public class FoldedPromise<T, R, F> extends DeferredObject<R, F, Long> {
+
+    static final int BATCH_SIZE = 128;
+
+    private final Accumulator<R, T> accumulator;
+    private final StreamSubscription subscription;
+    private R accumulated;
+    private long count;
+    private int outstanding;
+
+    public FoldedPromise(StreamPromise<T, F> stream, R seed, Accumulator<R, T> accumulator) {
+        this.accumulator = accumulator;
+        this.accumulated = seed;
+        this.subscription = stream.subscribe(new StreamCallback<T, F>() {
+            @Override
+            public void onItem(T item) {
+                if (isPending()) fold(item);
+            }
+
+            @Override
+            public void onComplete() {
+                if (isPending()) resolve(accumulated);
+            }
+
+            @Override
+            public void onFail(F reason) {
+                if (isPending()) reject(reason);
+            }
+        });
+        if (isPending()) {
+            outstanding = BATCH_SIZE;
+            subscription.request(BATCH_SIZE);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fold(T item) {
+        try {
+            accumulated = accumulator.accumulate(accumulated, item);
+        } catch (Exception e) {
+            subscription.cancel();
+            reject((F) e);
+            return;
+        }
+        count++;
+        if (--outstanding == 0) {
+            notify(count);
+            outstanding = BATCH_SIZE;
+            subscription.request(BATCH_SIZE);
+        }
+    }
+}
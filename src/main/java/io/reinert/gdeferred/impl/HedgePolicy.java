@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.Arrays;
+
+/**
+ * Decides how long a hedged request waits before starting its second attempt.
+ *
+ * @see Promises#hedge(io.reinert.gdeferred.PromiseSupplier, HedgePolicy)
+ */
+public abstract class HedgePolicy {
+
+    /**
+     * Hedges after a fixed delay.
+     *
+     * @param delayMillis the delay in milliseconds
+     *
+     * @return the policy
+     */
+    public static HedgePolicy fixed(final long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("Delay cannot be negative");
+        }
+        return new HedgePolicy() {
+            @Override
+            public long delay() {
+                return delayMillis;
+            }
+        };
+    }
+
+    /**
+     * Hedges after the given percentile of the latest latencies observed by the policy. The policy should be shared
+     * by the requests to the same operation.
+     *
+     * @param percentile    the latency percentile, e.g., {@code 95}
+     * @param window        the number of latest latencies considered
+     * @param initialMillis the delay used before any latency is observed
+     *
+     * @return the policy
+     */
+    public static HedgePolicy percentile(double percentile, int window, long initialMillis) {
+        if (!(percentile > 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be greater than 0 and at most 100");
+        }
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be greater than zero");
+        }
+        if (initialMillis < 0) {
+            throw new IllegalArgumentException("Initial delay cannot be negative");
+        }
+        return new Percentile(percentile, window, initialMillis);
+    }
+
+    /**
+     * Returns the delay before hedging a new request.
+     *
+     * @return the delay in milliseconds
+     */
+    public abstract long delay();
+
+    /**
+     * Receives the latency of a resolved attempt, measured from the start of that attempt. A first attempt that
+     * loses to the hedge is still recorded when it resolves.
+     *
+     * @param latencyMillis the latency in milliseconds
+     */
+    public void record(long latencyMillis) {
+    }
+
+    private static final class Percentile extends HedgePolicy {
+
+        private final double percentile;
+        private final long initialMillis;
+        private final long[] latencies;
+        private long[] sorted;
+        private int count;
+        private int next;
+        private long delay = -1;
+
+        Percentile(double percentile, int window, long initialMillis) {
+            this.percentile = percentile;
+            this.initialMillis = initialMillis;
+            this.latencies = new long[window];
+        }
+
+        @Override
+        public synchronized long delay() {
+            if (count == 0) {
+                return initialMillis;
+            }
+            // Sorted again only after new records
+            if (delay < 0) {
+                if (sorted == null) {
+                    sorted = new long[latencies.length];
+                }
+                System.arraycopy(latencies, 0, sorted, 0, count);
+                Arrays.sort(sorted, 0, count);
+                final int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+                delay = sorted[Math.max(0, Math.min(count - 1, rank))];
+            }
+            return delay;
+        }
+
+        @Override
+        public synchronized void record(long latencyMillis) {
+            latencies[next] = latencyMillis;
+            next = next + 1 == latencies.length ? 0 : next + 1;
+            if (count < latencies.length) count++;
+            delay = -1;
+        }
+    }
+}
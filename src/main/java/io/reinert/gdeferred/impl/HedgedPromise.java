@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.logging.Level;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.SubscribablePromise;
+import io.reinert.gdeferred.PromiseSupplier;
+import io.reinert.gdeferred.Subscription;
+
+/**
+ * Promise of an operation that is attempted a second time if the first attempt is slow.
+ * <p>
+ * The second attempt starts when the delay given by the {@link HedgePolicy} passes with the first one pending. The
+ * first attempt to resolve settles this promise, and the callbacks on the other attempt are unsubscribed. A failure
+ * only settles this promise when no other attempt is running, so a failed attempt waits for the other one. Progress
+ * of the attempts is not forwarded.
+ * <p>
+ * Each resolved attempt records its own latency in the policy, measured from its own start. After losing to the
+ * hedge, the first attempt stays subscribed until it resolves, so the policy sees how slow the operation actually
+ * was, not the winning time, which would cut off the tail the hedging delay is derived from.
+ * <p>
+ * The second attempt is started by the {@link Scheduler} timer: on the JVM, the supplier then runs on the timer
+ * thread shared by all scheduled tasks, so it should only start the operation and leave any blocking work to its own
+ * executor.
+ *
+ * @param <D> Type of the done result
+ * @param <F> Type of the failure
+ * @param <P> Type of the progress
+ *
+ * @see Promises#hedge(PromiseSupplier, HedgePolicy)
+ */
+public class HedgedPromise<D, F, P> extends DeferredObject<D, F, P> {
+
+    private static final int ATTEMPTS = 2;
+
+    private final PromiseSupplier<D, F, P> supplier;
+    private final HedgePolicy policy;
+    private final OneShotTimer timer = new OneShotTimer(new Runnable() {
+        @Override
+        public void run() {
+            attempt(1);
+        }
+    });
+
+    private final long[] startedAt = new long[ATTEMPTS];
+    private final Subscription[] subscriptions = new Subscription[ATTEMPTS * 2];
+    private int started;
+    private int failed;
+    private F lastFailure;
+    private boolean settled;
+
+    public HedgedPromise(PromiseSupplier<D, F, P> supplier, HedgePolicy policy) {
+        this.supplier = supplier;
+        this.policy = policy;
+
+        attempt(0);
+        synchronized (this) {
+            if (!settled) {
+                timer.schedule(policy.delay());
+            }
+        }
+    }
+
+    private void attempt(int index) {
+        synchronized (this) {
+            if (settled) return;
+            started++;
+            startedAt[index] = Scheduler.get().now();
+        }
+
+        final Promise<D, F, P> promise;
+        try {
+            promise = supplier.get();
+        } catch (RuntimeException e) {
+            // The first attempt fails the caller; a failed hedge leaves the first attempt alone
+            if (index == 0) throw e;
+            log.log(Level.SEVERE, "An uncaught exception occurred in a hedged attempt", e);
+            onAttemptFail(index, null, true);
+            return;
+        }
+
+        final Callback callback = new Callback(index);
+        if (!(promise instanceof SubscribablePromise)) {
+            // Losing attempts cannot be unsubscribed and just find the promise settled
+            promise.done(callback).fail(callback);
+            return;
+        }
+        final SubscribablePromise<D, F, P> subscribable = (SubscribablePromise<D, F, P>) promise;
+        final Subscription done = subscribable.subscribeDone(callback);
+        final Subscription fail = subscribable.subscribeFail(callback);
+        final boolean lost;
+        synchronized (this) {
+            subscriptions[index * 2] = done;
+            subscriptions[index * 2 + 1] = fail;
+            lost = settled;
+        }
+        if (lost) {
+            done.unsubscribe();
+            fail.unsubscribe();
+        }
+    }
+
+    private void onAttemptDone(int index, D result) {
+        final long latency;
+        final boolean lost;
+        synchronized (this) {
+            latency = Scheduler.get().now() - startedAt[index];
+            lost = settled;
+            settled = true;
+        }
+        policy.record(latency);
+        if (lost) return;
+
+        timer.cancel();
+        unsubscribeOthers(index);
+        resolve(result);
+    }
+
+    private void onAttemptFail(int index, F reason, boolean aborted) {
+        final F failure;
+        synchronized (this) {
+            if (settled) return;
+            if (aborted) {
+                started--;
+            } else {
+                failed++;
+                lastFailure = reason;
+            }
+            if (failed == 0 || failed < started) return;
+            settled = true;
+            failure = lastFailure;
+        }
+        timer.cancel();
+        unsubscribeOthers(index);
+        reject(failure);
+    }
+
+    private void unsubscribeOthers(int winner) {
+        for (int i = 0; i < ATTEMPTS; i++) {
+            if (i == winner) continue;
+            final Subscription done;
+            final Subscription fail;
+            synchronized (this) {
+                done = subscriptions[i * 2];
+                fail = subscriptions[i * 2 + 1];
+            }
+            // The first attempt keeps its done callback to record its own latency
+            if (done != null && i != 0) done.unsubscribe();
+            if (fail != null) fail.unsubscribe();
+        }
+    }
+
+    private class Callback implements DoneCallback<D>, FailCallback<F> {
+
+        private final int index;
+
+        Callback(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onDone(D result) {
+            onAttemptDone(index, result);
+        }
+
+        @Override
+        public void onFail(F result) {
+            onAttemptFail(index, result, false);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.Iterator;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Promise that runs an async step for each item of an iterator, one item at a time.
+ * <p>
+ * The next step starts when the previous one is resolved. Steps that settle synchronously are looped over in place,
+ * so neither the stack nor the number of intermediate promises grows with the number of items; the loop yields only
+ * when a step is still pending, and resumes from its callback. A single listener is the callback of every step.
+ * <p>
+ * Steps may settle on other threads. The loop state is guarded by a private lock, and only one step runs at a time,
+ * so this promise is never settled or notified concurrently.
+ * <p>
+ * The promise is resolved with the number of items processed, or rejected with the first failure. The count of
+ * completed items is notified as progress.
+ *
+ * @param <T> Type of the input items
+ * @param <F> Type of the failure
+ *
+ * @see Promises#forEachAsync(java.util.Iterator, io.reinert.gdeferred.DonePipe)
+ */
+public class IteratedPromise<T, F> extends DeferredObject<Integer, F, Integer> {
+
+    private final Iterator<? extends T> items;
+    private final DonePipe<T, ?, F, ?> step;
+    private final StepListener listener = new StepListener();
+    private final Object lock = new Object();
+
+    private int completed;
+    private boolean looping;
+    private boolean stepDone;
+
+    public IteratedPromise(Iterator<? extends T> items, DonePipe<T, ?, F, ?> step) {
+        this.items = items;
+        this.step = step;
+
+        loop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loop() {
+        synchronized (lock) {
+            looping = true;
+        }
+        while (isPending()) {
+            if (!items.hasNext()) {
+                final int count;
+                synchronized (lock) {
+                    looping = false;
+                    count = completed;
+                }
+                resolve(count);
+                return;
+            }
+
+            final Promise<Object, F, ?> promise = (Promise<Object, F, ?>) step.pipeDone(items.next());
+            promise.done(listener).fail(listener);
+
+            synchronized (lock) {
+                if (!stepDone) {
+                    // Truly pending: yield, the step callback resumes the loop
+                    looping = false;
+                    return;
+                }
+                stepDone = false;
+            }
+        }
+        synchronized (lock) {
+            looping = false;
+        }
+    }
+
+    private void onStepDone() {
+        final int count;
+        synchronized (lock) {
+            if (!isPending()) return;
+            count = ++completed;
+        }
+        notify(count);
+        synchronized (lock) {
+            if (looping) {
+                // Settled synchronously: the running loop goes on
+                stepDone = true;
+                return;
+            }
+        }
+        loop();
+    }
+
+    private void onStepFail(F reason) {
+        synchronized (lock) {
+            if (!isPending()) return;
+        }
+        reject(reason);
+    }
+
+    private class StepListener implements DoneCallback<Object>, FailCallback<F> {
+
+        @Override
+        public void onDone(Object result) {
+            onStepDone();
+        }
+
+        @Override
+        public void onFail(F reason) {
+            onStepFail(reason);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.logging.Level;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.Subscription;
+
+/**
+ * Deferred that runs its task only when the first callback is registered.
+ * <p>
+ * Any subscription starts the task: {@link #done(DoneCallback)}, {@link #fail(FailCallback)},
+ * {@link #progress(ProgressCallback)}, {@link #always(AlwaysCallback)}, every {@code then(...)} and combinators such
+ * as {@link Promises#when(java.util.Collection)}. The task may also be started on demand with {@link #start()}.
+ * Checking the state does not start it. Settling the deferred before any subscription discards the task.
+ * <p>
+ * If the task throws, the deferred is rejected with the exception, cast to the failure type.
+ *
+ * <pre>
+ * <code>
+ * Promise&lt;Config, Exception, Void&gt; config = new LazyDeferred&lt;Config, Exception, Void&gt;(
+ *     new LazyDeferred.Task&lt;Config, Exception, Void&gt;() {
+ *       public void run(Deferred&lt;Config, Exception, Void&gt; deferred) {
+ *         // start the request and settle the deferred when it returns
+ *       }
+ *     });
+ *
+ * config.done(...); // the request is sent now
+ * </code>
+ * </pre>
+ *
+ * @param <D> type of DoneCallback
+ * @param <F> type of FailCallback
+ * @param <P> type of ProgressCallback
+ */
+public class LazyDeferred<D, F, P> extends DeferredObject<D, F, P> {
+
+    /**
+     * The work producing the outcome of a {@link LazyDeferred}.
+     *
+     * @param <D> type used for {@link Deferred#resolve(Object)}
+     * @param <F> type used for {@link Deferred#reject(Object)}
+     * @param <P> type used for {@link Deferred#notify(Object)}
+     */
+    public interface Task<D, F, P> {
+        void run(Deferred<D, F, P> deferred);
+    }
+
+    private Task<D, F, P> task;
+
+    public LazyDeferred(Task<D, F, P> task) {
+        this.task = task;
+    }
+
+    @Override
+    public Deferred<D, F, P> resolve(final D resolve) {
+        task = null;
+        return super.resolve(resolve);
+    }
+
+    @Override
+    public Deferred<D, F, P> reject(final F reject) {
+        task = null;
+        return super.reject(reject);
+    }
+
+    @Override
+    public Promise<D, F, P> always(AlwaysCallback<D, F> callback) {
+        super.always(callback);
+        return start();
+    }
+
+    @Override
+    public Promise<D, F, P> done(DoneCallback<D> callback) {
+        super.done(callback);
+        return start();
+    }
+
+    @Override
+    public Promise<D, F, P> fail(FailCallback<F> callback) {
+        super.fail(callback);
+        return start();
+    }
+
+    @Override
+    public Promise<D, F, P> progress(ProgressCallback<P> callback) {
+        super.progress(callback);
+        return start();
+    }
+
+    @Override
+    protected void listen(StageListener<D, F, P> listener) {
+        super.listen(listener);
+        start();
+    }
+
+    @Override
+    public Subscription subscribeAlways(AlwaysCallback<D, F> callback) {
+        final Subscription subscription = super.subscribeAlways(callback);
+        start();
+        return subscription;
+    }
+
+    @Override
+    public Subscription subscribeDone(DoneCallback<D> callback) {
+        final Subscription subscription = super.subscribeDone(callback);
+        start();
+        return subscription;
+    }
+
+    @Override
+    public Subscription subscribeFail(FailCallback<F> callback) {
+        final Subscription subscription = super.subscribeFail(callback);
+        start();
+        return subscription;
+    }
+
+    @Override
+    public Subscription subscribeProgress(ProgressCallback<P> callback) {
+        final Subscription subscription = super.subscribeProgress(callback);
+        start();
+        return subscription;
+    }
+
+    /**
+     * Checks whether the task has already run.
+     *
+     * @return {@code true} if started, {@code false} otherwise
+     */
+    public boolean isStarted() {
+        return task == null;
+    }
+
+    /**
+     * Runs the task if it has not run yet.
+     *
+     * @return this promise
+     */
+    @SuppressWarnings("unchecked")
+    public Promise<D, F, P> start() {
+        if (task != null) {
+            final Task<D, F, P> pending = task;
+            task = null;
+            try {
+                pending.run(this);
+            } catch (RuntimeException e) {
+                if (isPending()) {
+                    reject((F) e);
+                } else {
+                    log.log(Level.SEVERE, "An uncaught exception occurred in a LazyDeferred task", e);
+                }
+            }
+        }
+        return this;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Promise that maps a collection through an async function with bounded concurrency.
+ * <p>
+ * Results are kept in input order in a presized array. The count of completed items is notified as progress.
+ * The promise is rejected with the first failure; pending items are then ignored.
+ * If the function throws or returns null, the promise is rejected with the thrown exception or a
+ * {@link NullPointerException}, cast to the failure type.
+ *
+ * @param <T> Type of the input items
+ * @param <D> Type of the mapped results
+ * @param <F> Type of the failure
+ *
+ * @see Promises#mapAsync(java.util.Collection, io.reinert.gdeferred.DonePipe, int)
+ */
+public class MappedPromise<T, D, F> extends DeferredObject<List<D>, F, Integer> {
+
+    private final Iterator<? extends T> items;
+    private final DonePipe<T, D, F, ?> function;
+    private final Object[] results;
+    private final int parallelism;
+
+    private int next;
+    private int running;
+    private int completed;
+    private boolean launching;
+
+    public MappedPromise(Collection<? extends T> items, DonePipe<T, D, F, ?> function, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        }
+        this.items = items.iterator();
+        this.function = function;
+        this.results = new Object[items.size()];
+        this.parallelism = parallelism;
+
+        if (results.length == 0) {
+            resolve(resultList());
+        } else {
+            launch();
+        }
+    }
+
+    /**
+     * Starts as many items as the parallelism allows.
+     * <p>
+     * Items settling synchronously re-enter here; the flag keeps the outer loop in charge so the stack does not
+     * grow with the number of items.
+     */
+    private void launch() {
+        if (launching) return;
+        launching = true;
+        try {
+            while (isPending() && running < parallelism && items.hasNext()) {
+                final int index = next++;
+                running++;
+                final Promise<D, F, ?> promise;
+                try {
+                    promise = function.pipeDone(items.next());
+                } catch (RuntimeException e) {
+                    onItemError(e);
+                    break;
+                }
+                if (promise == null) {
+                    onItemError(new NullPointerException("The function returned a null promise for item " + index));
+                    break;
+                }
+                final ItemCallback callback = new ItemCallback(index);
+                promise.done(callback).fail(callback);
+            }
+        } finally {
+            launching = false;
+        }
+    }
+
+    private void onItemDone(int index, D result) {
+        if (!isPending()) return;
+        results[index] = result;
+        running--;
+        completed++;
+        notify(completed);
+        if (completed == results.length) {
+            resolve(resultList());
+        } else {
+            launch();
+        }
+    }
+
+    private void onItemFail(F reason) {
+        if (!isPending()) return;
+        running--;
+        reject(reason);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onItemError(RuntimeException e) {
+        onItemFail((F) e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<D> resultList() {
+        return (List<D>) Arrays.asList(results);
+    }
+
+    private class ItemCallback implements DoneCallback<D>, FailCallback<F> {
+
+        private final int index;
+
+        ItemCallback(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onDone(D result) {
+            onItemDone(index, result);
+        }
+
+        @Override
+        public void onFail(F result) {
+            onItemFail(result);
+        }
+    }
+}
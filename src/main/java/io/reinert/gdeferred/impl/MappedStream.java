@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.StreamCallback;
+import io.reinert.gdeferred.StreamPromise;
+import io.reinert.gdeferred.StreamSubscription;
+
+/**
+ * Stream that transforms each item of another stream. Demand is forwarded as is.
+ * If the filter throws, the source is cancelled and the subscriber fails with the exception.
+ *
+ * @param <T> Type of the input items
+ * @param <T_OUT> Type of the output items
+ * @param <F> Type of the failure
+ */
+public class MappedStream<T, T_OUT, F> extends AbstractStreamPromise<T_OUT, F> {
+
+    private final StreamPromise<T, F> stream;
+    private final DoneFilter<T, T_OUT> filter;
+
+    public MappedStream(StreamPromise<T, F> stream, DoneFilter<T, T_OUT> filter) {
+        this.stream = stream;
+        this.filter = filter;
+    }
+
+    @Override
+    public StreamSubscription subscribe(final StreamCallback<T_OUT, F> callback) {
+        final Forwarder forwarder = new Forwarder(callback);
+        forwarder.subscription = stream.subscribe(forwarder);
+        return forwarder.subscription;
+    }
+
+    private class Forwarder implements StreamCallback<T, F> {
+
+        private final StreamCallback<T_OUT, F> callback;
+        private StreamSubscription subscription;
+        private boolean failed;
+
+        Forwarder(StreamCallback<T_OUT, F> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onItem(T item) {
+            if (failed) return;
+
+            final T_OUT mapped;
+            try {
+                mapped = filter.filterDone(item);
+            } catch (Exception e) {
+                failed = true;
+                subscription.cancel();
+                callback.onFail((F) e);
+                return;
+            }
+            callback.onItem(mapped);
+        }
+
+        @Override
+        public void onComplete() {
+            if (!failed) callback.onComplete();
+        }
+
+        @Override
+        public void onFail(F reason) {
+            if (!failed) callback.onFail(reason);
+        }
+    }
+}
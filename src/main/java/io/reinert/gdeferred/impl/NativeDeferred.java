@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Deferred backed by the browser's native {@code Promise}.
+ * <p>
+ * In GWT, the super-sourced version of this class dispatches callbacks as microtasks of the native
+ * {@code Promise}, attaching the context they were registered in. When the browser lacks a native
+ * {@code Promise}, it falls back to the synchronous dispatch of {@link DeferredObject}.
+ * <p>
+ * In the JVM, this class behaves exactly as {@link DeferredObject}. There is no native {@code Promise} to convert
+ * from or to, so {@link #wrap(JavaScriptObject)} and {@link #toNative()} throw; they are declared so that code
+ * calling them compiles on both sides. Such code should check {@link #isSupported()} first.
+ *
+ * @param <D> type of DoneCallback
+ * @param <F> type of FailCallback
+ * @param <P> type of ProgressCallback
+ */
+public class NativeDeferred<D, F, P> extends DeferredObject<D, F, P> {
+
+    /**
+     * Checks whether callbacks are dispatched by a native {@code Promise}.
+     *
+     * @return {@code true} if running in a browser that supports native promises, {@code false} otherwise
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Creates a deferred settled by the given native promise (or any thenable).
+     * <p>
+     * Only supported in GWT; in the JVM, there are no native promises.
+     *
+     * @param thenable  the native promise
+     * @param <D>       the done type
+     * @param <F>       the fail type
+     *
+     * @return a deferred following the native promise
+     *
+     * @throws UnsupportedOperationException always, in the JVM
+     */
+    public static <D, F> NativeDeferred<D, F, Void> wrap(JavaScriptObject thenable) {
+        throw new UnsupportedOperationException("Native promises are only available in GWT");
+    }
+
+    /**
+     * Returns a native promise that settles with this deferred's outcome.
+     * <p>
+     * Only supported in GWT; in the JVM, there are no native promises.
+     *
+     * @return a native promise
+     *
+     * @throws UnsupportedOperationException always, in the JVM
+     */
+    public JavaScriptObject toNative() {
+        throw new UnsupportedOperationException("Native promises are only available in GWT");
+    }
+}
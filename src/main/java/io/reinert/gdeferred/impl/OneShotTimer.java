@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+/**
+ * Re-armable one-shot timer running a task on a given {@link Scheduler}, or on the current one.
+ */
+final class OneShotTimer {
+
+    private final Scheduler scheduler;
+    private final Runnable task;
+    private Scheduler.Scheduled scheduled;
+
+    OneShotTimer(Runnable task) {
+        this(null, task);
+    }
+
+    /**
+     * @param scheduler the scheduler running the task, or {@code null} for the one current when scheduling
+     * @param task      the task
+     */
+    OneShotTimer(Scheduler scheduler, Runnable task) {
+        this.scheduler = scheduler;
+        this.task = task;
+    }
+
+    /**
+     * Runs the task after the delay, replacing any schedule not run yet.
+     *
+     * @param delayMillis the delay in milliseconds
+     */
+    synchronized void schedule(long delayMillis) {
+        cancel();
+        scheduled = (scheduler == null ? Scheduler.get() : scheduler).schedule(task, delayMillis);
+    }
+
+    synchronized void cancel() {
+        if (scheduled != null) {
+            scheduled.cancel();
+            scheduled = null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Read-only view of the outcomes of settled promises, in input order.
+ * <p>
+ * States and values are kept in two parallel arrays; the value slot holds the resolved or the rejected value,
+ * according to the state.
+ *
+ * @param <D> Type of the resolved values
+ * @param <F> Type of the rejected values
+ *
+ * @see Promises#allSettled(java.util.Collection)
+ */
+public final class Outcomes<D, F> {
+
+    private final Promise.State[] states;
+    private final Object[] values;
+
+    Outcomes(int size) {
+        this.states = new Promise.State[size];
+        this.values = new Object[size];
+    }
+
+    void set(int index, Promise.State state, Object value) {
+        states[index] = state;
+        values[index] = value;
+    }
+
+    public int size() {
+        return states.length;
+    }
+
+    public Promise.State state(int index) {
+        return states[index];
+    }
+
+    public boolean isResolved(int index) {
+        return states[index] == Promise.State.RESOLVED;
+    }
+
+    public boolean isRejected(int index) {
+        return states[index] == Promise.State.REJECTED;
+    }
+
+    /**
+     * Returns the resolved value of the promise at the index.
+     *
+     * @param index the input position
+     *
+     * @return the resolved value, or {@code null} if the promise was rejected
+     */
+    @SuppressWarnings("unchecked")
+    public D resolved(int index) {
+        return isResolved(index) ? (D) values[index] : null;
+    }
+
+    /**
+     * Returns the rejected value of the promise at the index.
+     *
+     * @param index the input position
+     *
+     * @return the rejected value, or {@code null} if the promise was resolved
+     */
+    @SuppressWarnings("unchecked")
+    public F rejected(int index) {
+        return isRejected(index) ? (F) values[index] : null;
+    }
+
+    public int countResolved() {
+        int count = 0;
+        for (Promise.State state : states) {
+            if (state == Promise.State.RESOLVED) count++;
+        }
+        return count;
+    }
+
+    public int countRejected() {
+        int count = 0;
+        for (Promise.State state : states) {
+            if (state == Promise.State.REJECTED) count++;
+        }
+        return count;
+    }
+}
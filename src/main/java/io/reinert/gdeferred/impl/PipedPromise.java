@@ -16,16 +16,17 @@
  */
 package io.reinert.gdeferred.impl;
 
-import io.reinert.gdeferred.DoneCallback;
 import io.reinert.gdeferred.DonePipe;
-import io.reinert.gdeferred.FailCallback;
 import io.reinert.gdeferred.FailPipe;
-import io.reinert.gdeferred.ProgressCallback;
 import io.reinert.gdeferred.ProgressPipe;
 import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.trace.Tracing;
 
 /**
  * Promise that handle piping.
+ * <p>
+ * The deadline of this stage is current while its pipes run, so producers may read it with
+ * {@link Deadline#current()}.
  *
  * @param <D> Done input
  * @param <F> Fail input
@@ -41,56 +42,116 @@ public class PipedPromise<D, F, P, D_OUT, F_OUT, P_OUT> extends DeferredObject<D
                         final DonePipe<D, D_OUT, F_OUT, P_OUT> doneFilter,
                         final FailPipe<F, D_OUT, F_OUT, P_OUT> failFilter,
                         final ProgressPipe<P, D_OUT, F_OUT, P_OUT> progressFilter) {
-        promise.done(new DoneCallback<D>() {
+        inheritDeadline(promise);
+        span = Tracing.startSpan("pipe");
+        new StageListener<D, F, P>() {
             @SuppressWarnings("unchecked")
             @Override
             public void onDone(D result) {
+                if (span != null) span.upstreamSettled(State.RESOLVED);
                 if (doneFilter != null) {
-                    pipe(doneFilter.pipeDone(result));
+                    final Deadline previous = CurrentDeadline.enter(deadline());
+                    final Promise<D_OUT, F_OUT, P_OUT> piped;
+                    try {
+                        piped = doneFilter.pipeDone(result);
+                    } catch (RuntimeException e) {
+                        if (span != null) span.failed(e);
+                        throw e;
+                    } finally {
+                        CurrentDeadline.enter(previous);
+                    }
+                    if (span != null) span.executed();
+                    pipe(piped);
                 } else {
                     PipedPromise.this.resolve((D_OUT) result);
                 }
             }
-        }).fail(new FailCallback<F>() {
+
             @SuppressWarnings("unchecked")
             @Override
             public void onFail(F result) {
+                if (span != null) span.upstreamSettled(State.REJECTED);
                 if (failFilter != null) {
-                    pipe(failFilter.pipeFail(result));
+                    final Deadline previous = CurrentDeadline.enter(deadline());
+                    final Promise<D_OUT, F_OUT, P_OUT> piped;
+                    try {
+                        piped = failFilter.pipeFail(result);
+                    } catch (RuntimeException e) {
+                        if (span != null) span.failed(e);
+                        throw e;
+                    } finally {
+                        CurrentDeadline.enter(previous);
+                    }
+                    if (span != null) span.executed();
+                    pipe(piped);
                 } else {
                     PipedPromise.this.reject((F_OUT) result);
                 }
             }
-        }).progress(new ProgressCallback<P>() {
+
             @SuppressWarnings("unchecked")
             @Override
             public void onProgress(P progress) {
                 if (progressFilter != null) {
-                    pipe(progressFilter.pipeProgress(progress));
+                    final Deadline previous = CurrentDeadline.enter(deadline());
+                    final Promise<D_OUT, F_OUT, P_OUT> piped;
+                    try {
+                        piped = progressFilter.pipeProgress(progress);
+                    } finally {
+                        CurrentDeadline.enter(previous);
+                    }
+                    pipe(piped);
                 } else {
                     PipedPromise.this.notify((P_OUT) progress);
                 }
             }
-        });
+        }.listenTo(promise);
     }
 
+    /**
+     * Settles this promise with the outcome of the piped one.
+     * <p>
+     * When the piped promise is itself a pending {@link PipedPromise}, it is linked to this promise instead of
+     * being subscribed. Thus async loops made of pipes returning pipes run in constant memory.
+     * <p>
+     * The deadline of this promise is armed on this promise. The piped promise may be shared, so it must not be
+     * rejected by a deadline it did not have: it is linked only when its own deadline is not later than this one's.
+     * Producers giving the promise they return the {@link Deadline#current() current} deadline thus keep pipe loops
+     * linked under a deadline.
+     *
+     * @param promise the promise returned by a pipe
+     *
+     * @return the piped promise
+     */
+    @SuppressWarnings("unchecked")
     protected Promise<D_OUT, F_OUT, P_OUT> pipe(Promise<D_OUT, F_OUT, P_OUT> promise) {
-        promise.done(new DoneCallback<D_OUT>() {
+        final Deadline deadline = deadline();
+        if (deadline != null) {
+            withDeadline(deadline);
+        }
+        if (promise instanceof PipedPromise) {
+            final DeferredObject<D_OUT, F_OUT, P_OUT> piped = (DeferredObject<D_OUT, F_OUT, P_OUT>) promise;
+            if ((deadline == null || !deadline.isBefore(piped.deadline())) && piped.linkTo(this)) {
+                return promise;
+            }
+        }
+
+        new StageListener<D_OUT, F_OUT, P_OUT>() {
             @Override
             public void onDone(D_OUT result) {
                 PipedPromise.this.resolve(result);
             }
-        }).fail(new FailCallback<F_OUT>() {
+
             @Override
             public void onFail(F_OUT result) {
                 PipedPromise.this.reject(result);
             }
-        }).progress(new ProgressCallback<P_OUT>() {
+
             @Override
             public void onProgress(P_OUT progress) {
                 PipedPromise.this.notify(progress);
             }
-        });
+        }.listenTo(promise);
         return promise;
     }
 }
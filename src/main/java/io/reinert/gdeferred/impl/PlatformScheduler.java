@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scheduler backed by the system clock and a single daemon timer thread shared by every task.
+ * <p>
+ * A task that throws is logged; letting the exception through would cancel the timer thread and every task on it.
+ * <p>
+ * In GWT, the super-sourced version uses the browser timer.
+ */
+final class PlatformScheduler extends Scheduler {
+
+    private static final Logger log = Logger.getLogger(String.valueOf(PlatformScheduler.class));
+
+    private static Timer thread;
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public Scheduled schedule(Runnable task, long delayMillis) {
+        final Task scheduled = new Task(task);
+        thread().schedule(scheduled, Math.max(0, delayMillis));
+        return scheduled;
+    }
+
+    private static synchronized Timer thread() {
+        if (thread == null) {
+            thread = new Timer("gdeferred-timer", true);
+        }
+        return thread;
+    }
+
+    private static final class Task extends TimerTask implements Scheduled {
+
+        private final Runnable task;
+
+        Task(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.log(Level.SEVERE, "An uncaught exception occurred in a scheduled task", e);
+            }
+        }
+    }
+}
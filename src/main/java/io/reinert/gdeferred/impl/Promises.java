@@ -0,0 +1,266 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import io.reinert.gdeferred.Accumulator;
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.PromiseSupplier;
+
+/**
+ * Combinators over multiple promises.
+ */
+public final class Promises {
+
+    private static final DonePipe<PromiseSupplier<?, ?, ?>, Object, Object, Object> SUPPLY =
+            new DonePipe<PromiseSupplier<?, ?, ?>, Object, Object, Object>() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public Promise<Object, Object, Object> pipeDone(PromiseSupplier<?, ?, ?> operation) {
+                    return (Promise<Object, Object, Object>) operation.get();
+                }
+            };
+
+    private Promises() {
+    }
+
+    /**
+     * Combines two promises into one resolved with both results, in the given order, or rejected with the first
+     * failure. The number of resolved promises is notified as progress.
+     * <p>
+     * There is no varargs form, since a generic array parameter is unchecked; more promises are combined with
+     * {@link #when(java.util.Collection)}.
+     *
+     * @param first     the first promise to wait for
+     * @param second    the second promise to wait for
+     * @param <D>       the done type
+     * @param <F>       the fail type
+     *
+     * @return a promise of both results
+     */
+    public static <D, F> Promise<List<D>, F, Integer> when(Promise<D, F, ?> first, Promise<D, F, ?> second) {
+        final List<Promise<D, F, ?>> promises = new ArrayList<Promise<D, F, ?>>(2);
+        promises.add(first);
+        promises.add(second);
+        return when(promises);
+    }
+
+    /**
+     * Combines three promises into one resolved with all their results, in the given order, or rejected with the
+     * first failure. The number of resolved promises is notified as progress.
+     *
+     * @param first     the first promise to wait for
+     * @param second    the second promise to wait for
+     * @param third     the third promise to wait for
+     * @param <D>       the done type
+     * @param <F>       the fail type
+     *
+     * @return a promise of all the results
+     */
+    public static <D, F> Promise<List<D>, F, Integer> when(Promise<D, F, ?> first, Promise<D, F, ?> second,
+                                                           Promise<D, F, ?> third) {
+        final List<Promise<D, F, ?>> promises = new ArrayList<Promise<D, F, ?>>(3);
+        promises.add(first);
+        promises.add(second);
+        promises.add(third);
+        return when(promises);
+    }
+
+    /**
+     * Combines the promises into one resolved with all their results, in iteration order, or rejected with the
+     * first failure. The number of resolved promises is notified as progress.
+     * <p>
+     * Lazy promises, like {@link LazyDeferred}, are started by this call.
+     *
+     * @param promises  the promises to wait for
+     * @param <D>       the done type
+     * @param <F>       the fail type
+     *
+     * @return a promise of all the results
+     */
+    public static <D, F> Promise<List<D>, F, Integer> when(Collection<? extends Promise<D, F, ?>> promises) {
+        return new MappedPromise<Promise<D, F, ?>, D, F>(promises, new Identity<D, F>(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Waits for all the promises to settle, whether resolved or rejected.
+     * <p>
+     * The returned promise is always resolved, with a read-only view of every input's state and value in input
+     * order. The number of settled promises is notified as progress.
+     *
+     * @param promises  the promises to wait for
+     * @param <D>       the done type
+     * @param <F>       the fail type
+     *
+     * @return a promise of the outcomes
+     */
+    public static <D, F> Promise<Outcomes<D, F>, Void, Integer> allSettled(
+            Collection<? extends Promise<D, F, ?>> promises) {
+        return new AllSettledPromise<D, F>(promises);
+    }
+
+    /**
+     * Applies an async function to every item of the collection, running at most {@code parallelism} at once.
+     * <p>
+     * The returned promise is resolved with the results in input order, or rejected with the first failure.
+     * The number of completed items is notified as progress.
+     *
+     * <pre>
+     * <code>
+     * Promises.mapAsync(ids, new DonePipe&lt;Long, User, Exception, Void&gt;() {
+     *   public Promise&lt;User, Exception, Void&gt; pipeDone(Long id) {
+     *     return loadUser(id);
+     *   }
+     * }, 8).done(...).progress(...);
+     * </code>
+     * </pre>
+     *
+     * @param items         the input items
+     * @param function      the async function applied to each item
+     * @param parallelism   the maximum number of pending items
+     * @param <T>           the input type
+     * @param <D>           the output done type
+     * @param <F>           the output fail type
+     *
+     * @return a promise of all the mapped results
+     */
+    public static <T, D, F> Promise<List<D>, F, Integer> mapAsync(Collection<? extends T> items,
+                                                                  DonePipe<T, D, F, ?> function,
+                                                                  int parallelism) {
+        return new MappedPromise<T, D, F>(items, function, parallelism);
+    }
+
+    /**
+     * Folds the results of the promises as they settle, without holding them.
+     * <p>
+     * The returned promise is resolved with the accumulated value once every promise is resolved, or rejected with
+     * the first failure. Results are folded in settlement order. The number of promises folded is notified as
+     * progress.
+     *
+     * <pre>
+     * <code>
+     * Promises.reduce(counts, 0L, new Accumulator&lt;Long, Integer&gt;() {
+     *   public Long accumulate(Long sum, Integer count) {
+     *     return sum + count;
+     *   }
+     * }).done(...);
+     * </code>
+     * </pre>
+     *
+     * @param promises      the promises to fold
+     * @param seed          the initial accumulated value
+     * @param accumulator   the fold function
+     * @param <D>           the done type
+     * @param <R>           the accumulated type
+     * @param <F>           the fail type
+     *
+     * @return a promise of the accumulated value
+     */
+    public static <D, R, F> Promise<R, F, Integer> reduce(Iterable<? extends Promise<D, F, ?>> promises, R seed,
+                                                          Accumulator<R, D> accumulator) {
+        return new ReducedPromise<D, R, F>(promises, seed, accumulator);
+    }
+
+    /**
+     * Runs an async step for each item, one at a time, without growing the stack or chaining a promise per item.
+     * <p>
+     * Steps that are already settled when returned are looped over in place; the iteration yields only while a step
+     * is pending. The returned promise is resolved with the number of items processed once every step is resolved,
+     * or rejected with the first failure, in which case the remaining items are not visited. The number of items
+     * completed is notified as progress.
+     *
+     * <pre>
+     * <code>
+     * Promises.forEachAsync(rows.iterator(), new DonePipe&lt;Row, Void, Throwable, Void&gt;() {
+     *   public Promise&lt;Void, Throwable, Void&gt; pipeDone(Row row) {
+     *     return store.save(row);
+     *   }
+     * }).done(...);
+     * </code>
+     * </pre>
+     *
+     * @param items     the input items, consumed lazily
+     * @param step      the async step applied to each item
+     * @param <T>       the input type
+     * @param <F>       the fail type
+     *
+     * @return a promise of the number of items processed
+     */
+    public static <T, F> Promise<Integer, F, Integer> forEachAsync(Iterator<? extends T> items,
+                                                                   DonePipe<T, ?, F, ?> step) {
+        return new IteratedPromise<T, F>(items, step);
+    }
+
+    /**
+     * Runs the operations one after the other, each one starting when the previous one is resolved.
+     *
+     * @param operations    the operations, consumed lazily
+     * @param <F>           the fail type
+     *
+     * @return a promise of the number of operations run
+     *
+     * @see #forEachAsync(Iterator, DonePipe)
+     */
+    @SuppressWarnings("unchecked")
+    public static <F> Promise<Integer, F, Integer> sequence(
+            Iterator<? extends PromiseSupplier<?, F, ?>> operations) {
+        return new IteratedPromise<PromiseSupplier<?, F, ?>, F>(operations, (DonePipe) SUPPLY);
+    }
+
+    /**
+     * Runs the operation and, if it is still pending after the policy delay, runs it again, settling with the first
+     * attempt to resolve.
+     * <p>
+     * Hedging trims the latency tail caused by a single slow replica, at the cost of extra load. The operation must be
+     * safe to run twice.
+     *
+     * <pre>
+     * <code>
+     * HedgePolicy policy = HedgePolicy.percentile(95, 100, 50);
+     *
+     * Promises.hedge(new PromiseSupplier&lt;User, Throwable, Void&gt;() {
+     *   public Promise&lt;User, Throwable, Void&gt; get() {
+     *     return userService.load(id);
+     *   }
+     * }, policy).done(...);
+     * </code>
+     * </pre>
+     *
+     * @param supplier  the operation
+     * @param policy    the hedging delay policy
+     * @param <D>       the done type
+     * @param <F>       the fail type
+     * @param <P>       the progress type
+     *
+     * @return a promise of the first result
+     */
+    public static <D, F, P> Promise<D, F, P> hedge(PromiseSupplier<D, F, P> supplier, HedgePolicy policy) {
+        return new HedgedPromise<D, F, P>(supplier, policy);
+    }
+
+    private static final class Identity<D, F> implements DonePipe<Promise<D, F, ?>, D, F, Object> {
+        @SuppressWarnings("unchecked")
+        @Override
+        public Promise<D, F, Object> pipeDone(Promise<D, F, ?> promise) {
+            return (Promise<D, F, Object>) promise;
+        }
+    }
+}
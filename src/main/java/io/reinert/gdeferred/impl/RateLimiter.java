@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Token-bucket rate limiter handing out permits as promises.
+ * <p>
+ * The bucket holds up to {@code burst} tokens and refills at the given rate. A permit resolves right away while
+ * tokens are available; otherwise it waits in a bounded FIFO queue, and is rejected with a
+ * {@link RateLimitExceededException} when the queue is full. A single timer per limiter, armed for the next token,
+ * releases the waiters.
+ * <p>
+ * A waiting permit that is no longer pending when its turn comes, e.g., because its deadline passed, is skipped
+ * without consuming a token.
+ *
+ * <pre>
+ * <code>
+ * RateLimiter limiter = new RateLimiter(10, 5, 100);
+ *
+ * limiter.acquire().then(new DonePipe&lt;Void, Response, Throwable, Void&gt;() {
+ *   public Promise&lt;Response, Throwable, Void&gt; pipeDone(Void permit) {
+ *     return client.send(request);
+ *   }
+ * });
+ * </code>
+ * </pre>
+ */
+public class RateLimiter {
+
+    private final double permitsPerMillis;
+    private final int burst;
+    private final DeferredObject<?, ?, ?>[] waiters;
+    private final OneShotTimer timer = new OneShotTimer(new Runnable() {
+        @Override
+        public void run() {
+            release();
+        }
+    });
+
+    private double tokens;
+    private long refilledAt;
+    private int head;
+    private int size;
+    private boolean armed;
+
+    /**
+     * @param permitsPerSecond  the refill rate
+     * @param burst             the bucket capacity, also its initial content
+     * @param maxWaiters        the maximum number of permits waiting for tokens
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int maxWaiters) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("Rate must be greater than zero");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Burst must be greater than zero");
+        }
+        if (maxWaiters < 0) {
+            throw new IllegalArgumentException("Max waiters cannot be negative");
+        }
+        this.permitsPerMillis = permitsPerSecond / 1000;
+        this.burst = burst;
+        this.waiters = new DeferredObject<?, ?, ?>[maxWaiters];
+        this.tokens = burst;
+        this.refilledAt = Scheduler.get().now();
+    }
+
+    /**
+     * Requests a permit.
+     *
+     * @return a promise resolved when a token is taken, or rejected if the queue is full
+     */
+    public synchronized Promise<Void, Throwable, Void> acquire() {
+        if (size == 0 && tryTake()) {
+            return new DeferredObject<Void, Throwable, Void>().resolve(null);
+        }
+        if (size == waiters.length) {
+            return new RejectedPromise<Void, Throwable, Void>(new RateLimitExceededException(waiters.length));
+        }
+
+        final DeferredObject<Void, Throwable, Void> permit = new DeferredObject<Void, Throwable, Void>();
+        waiters[(head + size) % waiters.length] = permit;
+        size++;
+        arm();
+        return permit;
+    }
+
+    /**
+     * Takes a token if available, without waiting. Waiting permits are served first.
+     *
+     * @return {@code true} if a token was taken, {@code false} otherwise
+     */
+    public synchronized boolean tryAcquire() {
+        return size == 0 && tryTake();
+    }
+
+    /**
+     * Returns the number of permits waiting for tokens.
+     *
+     * @return the queue size
+     */
+    public synchronized int waiting() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void release() {
+        final List<DeferredObject<Void, Throwable, Void>> ready = new ArrayList<DeferredObject<Void, Throwable, Void>>();
+        synchronized (this) {
+            armed = false;
+            while (size > 0) {
+                final DeferredObject<Void, Throwable, Void> permit =
+                        (DeferredObject<Void, Throwable, Void>) waiters[head];
+                if (permit.isPending()) {
+                    if (!tryTake()) break;
+                    ready.add(permit);
+                }
+                waiters[head] = null;
+                head = (head + 1) % waiters.length;
+                size--;
+            }
+            arm();
+        }
+        // Resolve outside the lock: callbacks may acquire again
+        for (DeferredObject<Void, Throwable, Void> permit : ready) {
+            permit.resolve(null);
+        }
+    }
+
+    private boolean tryTake() {
+        final long now = Scheduler.get().now();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerMillis);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    private void arm() {
+        if (size > 0 && !armed) {
+            armed = true;
+            timer.schedule((long) Math.ceil((1 - tokens) / permitsPerMillis));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.Accumulator;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Promise that folds the results of other promises as they settle.
+ * <p>
+ * Only the accumulated value and two counters are kept, whatever the number of promises. Results are folded in
+ * settlement order, so the accumulator should not depend on the order of the inputs. The promise is rejected with
+ * the first failure, or with the exception thrown by the accumulator. The number of promises folded is notified as
+ * progress.
+ *
+ * @param <D> Type of the input results
+ * @param <R> Type of the accumulated value
+ * @param <F> Type of the failure
+ *
+ * @see Promises#reduce(Iterable, Object, io.reinert.gdeferred.Accumulator)
+ */
+public class ReducedPromise<D, R, F> extends DeferredObject<R, F, Integer> {
+
+    private final Accumulator<R, D> accumulator;
+    private R accumulated;
+    private int total;
+    private int settled;
+    private boolean subscribing;
+
+    public ReducedPromise(Iterable<? extends Promise<D, F, ?>> promises, R seed, Accumulator<R, D> accumulator) {
+        this.accumulator = accumulator;
+        this.accumulated = seed;
+
+        // A single callback instance serves every input
+        final Callback callback = new Callback();
+        subscribing = true;
+        for (Promise<D, F, ?> promise : promises) {
+            if (!isPending()) break;
+            total++;
+            promise.done(callback).fail(callback);
+        }
+        subscribing = false;
+
+        if (isPending() && settled == total) {
+            resolve(accumulated);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onInputDone(D result) {
+        if (!isPending()) return;
+        try {
+            accumulated = accumulator.accumulate(accumulated, result);
+        } catch (Exception e) {
+            reject((F) e);
+            return;
+        }
+        settled++;
+        notify(settled);
+        if (!subscribing && settled == total) {
+            resolve(accumulated);
+        }
+    }
+
+    private void onInputFail(F reason) {
+        if (!isPending()) return;
+        reject(reason);
+    }
+
+    private class Callback implements DoneCallback<D>, FailCallback<F> {
+
+        @Override
+        public void onDone(D result) {
+            onInputDone(result);
+        }
+
+        @Override
+        public void onFail(F result) {
+            onInputFail(result);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.FailFilter;
+import io.reinert.gdeferred.FailPipe;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.ProgressFilter;
+import io.reinert.gdeferred.ProgressPipe;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.SubscribablePromise;
+import io.reinert.gdeferred.Subscription;
+
+/**
+ * Immutable promise born rejected.
+ * <p>
+ * Callbacks run right away and are not stored, so a single instance can be handed to any number of callers.
+ *
+ * @param <D> The type of the result received when the promise is done
+ * @param <F> The type of the result received when the promise failed
+ * @param <P> The type of the progress notification
+ */
+public class RejectedPromise<D, F, P> implements SubscribablePromise<D, F, P> {
+
+    private static final Logger log = Logger.getLogger(String.valueOf(RejectedPromise.class));
+
+    private static final Subscription UNSUBSCRIBED = new Subscription() {
+        @Override
+        public void unsubscribe() {
+        }
+
+        @Override
+        public boolean isSubscribed() {
+            return false;
+        }
+    };
+
+    private final F rejectResult;
+
+    public RejectedPromise(F rejectResult) {
+        this.rejectResult = rejectResult;
+    }
+
+    @Override
+    public Promise<D, F, P> always(AlwaysCallback<D, F> callback) {
+        try {
+            callback.onAlways(State.REJECTED, null, rejectResult);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a AlwaysCallback", e);
+        }
+        return this;
+    }
+
+    @Override
+    public Promise<D, F, P> done(DoneCallback<D> callback) {
+        return this;
+    }
+
+    @Override
+    public Promise<D, F, P> fail(FailCallback<F> callback) {
+        try {
+            callback.onFail(rejectResult);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "An uncaught exception occurred in a FailCallback", e);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isPending() {
+        return false;
+    }
+
+    @Override
+    public boolean isRejected() {
+        return true;
+    }
+
+    @Override
+    public boolean isResolved() {
+        return false;
+    }
+
+    @Override
+    public Promise<D, F, P> progress(ProgressCallback<P> callback) {
+        return this;
+    }
+
+    @Override
+    public State state() {
+        return State.REJECTED;
+    }
+
+    @Override
+    public Subscription subscribeAlways(AlwaysCallback<D, F> callback) {
+        always(callback);
+        return UNSUBSCRIBED;
+    }
+
+    @Override
+    public Subscription subscribeDone(DoneCallback<D> callback) {
+        return UNSUBSCRIBED;
+    }
+
+    @Override
+    public Subscription subscribeFail(FailCallback<F> callback) {
+        fail(callback);
+        return UNSUBSCRIBED;
+    }
+
+    @Override
+    public Subscription subscribeProgress(ProgressCallback<P> callback) {
+        return UNSUBSCRIBED;
+    }
+
+    @Override
+    public Promise<D, F, P> then(DoneCallback<D> callback) {
+        return this;
+    }
+
+    @Override
+    public Promise<D, F, P> then(DoneCallback<D> doneCallback, FailCallback<F> failCallback) {
+        return fail(failCallback);
+    }
+
+    @Override
+    public Promise<D, F, P> then(DoneCallback<D> doneCallback, FailCallback<F> failCallback,
+                                 ProgressCallback<P> progressCallback) {
+        return fail(failCallback);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter) {
+        return new FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, null, null);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter,
+                                                                   FailFilter<F, F_OUT> failFilter) {
+        return new FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, failFilter, null);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter,
+                                                                   FailFilter<F, F_OUT> failFilter,
+                                                                   ProgressFilter<P, P_OUT> progressFilter) {
+        return new FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, failFilter, progressFilter);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DonePipe<D, D_OUT, F_OUT, P_OUT> donePipe) {
+        return new PipedPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, donePipe, null, null);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DonePipe<D, D_OUT, F_OUT, P_OUT> donePipe,
+                                                                   FailPipe<F, D_OUT, F_OUT, P_OUT> failPipe) {
+        return new PipedPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, donePipe, failPipe, null);
+    }
+
+    @Override
+    public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DonePipe<D, D_OUT, F_OUT, P_OUT> donePipe,
+                                                                   FailPipe<F, D_OUT, F_OUT, P_OUT> failPipe,
+                                                                   ProgressPipe<P, D_OUT, F_OUT, P_OUT> progressPipe) {
+        return new PipedPromise<D, F, P, D_OUT, F_OUT, P_OUT>(this, donePipe, failPipe, progressPipe);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+/**
+ * Clock and timer used by every time-based feature of the library: deadlines, rate limiters, circuit breakers and
+ * hedged requests.
+ * <p>
+ * By default, the platform clock and timer are used. Tests may install a {@link VirtualScheduler} to control time.
+ * The scheduler should be set before creating the objects that use it, since timers already armed stay on the
+ * scheduler that armed them.
+ *
+ * <pre>
+ * <code>
+ * VirtualScheduler scheduler = new VirtualScheduler();
+ * Scheduler.set(scheduler);
+ *
+ * Promise promise = new DeferredObject().withTimeout(5000);
+ * scheduler.advanceBy(5000);
+ * // promise is now rejected with a DeadlineExceededException
+ * </code>
+ * </pre>
+ */
+public abstract class Scheduler {
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public interface Scheduled {
+
+        /**
+         * Prevents the task from running, if not run yet.
+         *
+         * @return {@code true} if the task will not run because of this call, {@code false} otherwise
+         */
+        boolean cancel();
+    }
+
+    private static volatile Scheduler current = new PlatformScheduler();
+
+    // Deadlines armed on this scheduler; owned per scheduler so that none is lost when swapping schedulers
+    final DeadlineTimer deadlines = new DeadlineTimer(this);
+
+    /**
+     * Returns the scheduler in use.
+     *
+     * @return the current scheduler
+     */
+    public static Scheduler get() {
+        return current;
+    }
+
+    /**
+     * Sets the scheduler in use.
+     *
+     * @param scheduler the scheduler, or {@code null} to restore the platform scheduler
+     */
+    public static void set(Scheduler scheduler) {
+        current = scheduler == null ? new PlatformScheduler() : scheduler;
+    }
+
+    /**
+     * Returns the current time.
+     *
+     * @return the time in milliseconds
+     */
+    public abstract long now();
+
+    /**
+     * Runs the task once after the delay.
+     *
+     * @param task          the task
+     * @param delayMillis   the delay in milliseconds; negative values run as soon as possible
+     *
+     * @return the handle to cancel the task
+     */
+    public abstract Scheduled schedule(Runnable task, long delayMillis);
+}
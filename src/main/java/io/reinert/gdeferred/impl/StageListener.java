@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.List;
+
+import io.reinert.gdeferred.BatchProgressCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Single object receiving every signal a promise stage needs from the promise it follows.
+ * <p>
+ * On an {@link AbstractPromise}, the listener is registered through {@link AbstractPromise#listen(StageListener)}
+ * rather than {@code done}, {@code fail} and {@code progress}. When registered first, it takes the stage slot of the
+ * promise instead of an entry in each callback list, and is dispatched before the callbacks of the same kind, all
+ * registered after it. Other promises get it as plain callbacks.
+ * <p>
+ * The type is visible only so that subclasses of {@link AbstractPromise} may override the registration; it cannot be
+ * extended outside the library.
+ *
+ * @param <D> Type of the done result
+ * @param <F> Type of the failure
+ * @param <P> Type of the progress
+ */
+public abstract class StageListener<D, F, P> implements DoneCallback<D>, FailCallback<F>, BatchProgressCallback<P> {
+
+    /**
+     * Context snapshot attached around the listener when dispatched from the stage slot.
+     */
+    Object context;
+
+    StageListener() {
+    }
+
+    /**
+     * Registers this listener on the promise.
+     *
+     * @param promise the promise followed
+     */
+    void listenTo(Promise<D, F, P> promise) {
+        if (promise instanceof AbstractPromise) {
+            ((AbstractPromise<D, F, P>) promise).listen(this);
+        } else {
+            promise.done(this).fail(this).progress(this);
+        }
+    }
+
+    @Override
+    public void onProgressBatch(List<P> progress) {
+        for (P value : progress) {
+            onProgress(value);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.PriorityQueue;
+
+/**
+ * Scheduler whose time only moves when told to, for tests.
+ * <p>
+ * Tasks run in the thread calling {@link #advanceBy(long)}, ordered by due time and then by scheduling order. Each
+ * task sees the clock at its own due time, so scenarios spanning hours run instantly and always the same way.
+ */
+public class VirtualScheduler extends Scheduler {
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+    private long now;
+    private long sequence;
+
+    public VirtualScheduler() {
+        this(0);
+    }
+
+    /**
+     * @param startMillis the initial time
+     */
+    public VirtualScheduler(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public synchronized long now() {
+        return now;
+    }
+
+    @Override
+    public synchronized Scheduled schedule(Runnable task, long delayMillis) {
+        final Entry entry = new Entry(task, now + Math.max(0, delayMillis), sequence++);
+        queue.add(entry);
+        return entry;
+    }
+
+    /**
+     * Moves the clock forward, running the tasks due until then, including those scheduled by the tasks run.
+     *
+     * @param millis the time to advance, in milliseconds
+     */
+    public void advanceBy(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Cannot move time backwards");
+        }
+
+        final long target;
+        synchronized (this) {
+            target = now + millis;
+        }
+        while (true) {
+            final Entry next;
+            synchronized (this) {
+                next = queue.peek();
+                if (next == null || next.time > target) {
+                    now = target;
+                    return;
+                }
+                queue.poll();
+                now = next.time;
+            }
+            // Run outside the lock: tasks schedule and cancel other tasks
+            next.task.run();
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     *
+     * @return the pending tasks
+     */
+    public synchronized int pending() {
+        return queue.size();
+    }
+
+    private final class Entry implements Scheduled, Comparable<Entry> {
+
+        private final Runnable task;
+        private final long time;
+        private final long order;
+
+        Entry(Runnable task, long time, long order) {
+            this.task = task;
+            this.time = time;
+            this.order = order;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (VirtualScheduler.this) {
+                return queue.remove(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return order < other.order ? -1 : order == other.order ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.lang.ref.WeakReference;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.SubscribablePromise;
+import io.reinert.gdeferred.Subscription;
+
+/**
+ * Registration of callbacks that do not keep their owners reachable.
+ * <p>
+ * The promise holds the callback through a weak reference, so a discarded view is collected even though the promise
+ * lives on. Entries whose callback was collected are removed when the promise next dispatches to them. Since the
+ * promise no longer holds the callback strongly, its owner must do so, usually in a field:
+ *
+ * <pre>
+ * <code>
+ * class UserPresenter {
+ *   private final DoneCallback&lt;User&gt; onUser = new DoneCallback&lt;User&gt;() { ... };
+ *
+ *   void bind(SubscribablePromise&lt;User, ?, ?&gt; user) {
+ *     subscription = WeakCallbacks.done(user, onUser);
+ *   }
+ *
+ *   void unbind() {
+ *     subscription.unsubscribe();
+ *   }
+ * }
+ * </code>
+ * </pre>
+ *
+ * On GWT, where weak references are not available, callbacks are held strongly until unsubscribed, so owners should
+ * release the returned subscription when they are disposed.
+ */
+public final class WeakCallbacks {
+
+    private WeakCallbacks() {
+    }
+
+    public static <D, F> Subscription always(SubscribablePromise<D, F, ?> promise, AlwaysCallback<D, F> callback) {
+        final WeakAlways<D, F> weak = new WeakAlways<D, F>(callback);
+        weak.subscription = promise.subscribeAlways(weak);
+        return weak.subscription;
+    }
+
+    public static <D> Subscription done(SubscribablePromise<D, ?, ?> promise, DoneCallback<D> callback) {
+        final WeakDone<D> weak = new WeakDone<D>(callback);
+        weak.subscription = promise.subscribeDone(weak);
+        return weak.subscription;
+    }
+
+    public static <F> Subscription fail(SubscribablePromise<?, F, ?> promise, FailCallback<F> callback) {
+        final WeakFail<F> weak = new WeakFail<F>(callback);
+        weak.subscription = promise.subscribeFail(weak);
+        return weak.subscription;
+    }
+
+    public static <P> Subscription progress(SubscribablePromise<?, ?, P> promise, ProgressCallback<P> callback) {
+        final WeakProgress<P> weak = new WeakProgress<P>(callback);
+        weak.subscription = promise.subscribeProgress(weak);
+        return weak.subscription;
+    }
+
+    private static void prune(Subscription subscription) {
+        // Null only if collected while being registered
+        if (subscription != null) subscription.unsubscribe();
+    }
+
+    private static final class WeakAlways<D, F> extends WeakReference<AlwaysCallback<D, F>>
+            implements AlwaysCallback<D, F> {
+
+        private Subscription subscription;
+
+        WeakAlways(AlwaysCallback<D, F> callback) {
+            super(callback);
+        }
+
+        @Override
+        public void onAlways(Promise.State state, D resolved, F rejected) {
+            final AlwaysCallback<D, F> callback = get();
+            if (callback == null) {
+                prune(subscription);
+            } else {
+                callback.onAlways(state, resolved, rejected);
+            }
+        }
+    }
+
+    private static final class WeakDone<D> extends WeakReference<DoneCallback<D>> implements DoneCallback<D> {
+
+        private Subscription subscription;
+
+        WeakDone(DoneCallback<D> callback) {
+            super(callback);
+        }
+
+        @Override
+        public void onDone(D result) {
+            final DoneCallback<D> callback = get();
+            if (callback == null) {
+                prune(subscription);
+            } else {
+                callback.onDone(result);
+            }
+        }
+    }
+
+    private static final class WeakFail<F> extends WeakReference<FailCallback<F>> implements FailCallback<F> {
+
+        private Subscription subscription;
+
+        WeakFail(FailCallback<F> callback) {
+            super(callback);
+        }
+
+        @Override
+        public void onFail(F result) {
+            final FailCallback<F> callback = get();
+            if (callback == null) {
+                prune(subscription);
+            } else {
+                callback.onFail(result);
+            }
+        }
+    }
+
+    private static final class WeakProgress<P> extends WeakReference<ProgressCallback<P>>
+            implements ProgressCallback<P> {
+
+        private Subscription subscription;
+
+        WeakProgress(ProgressCallback<P> callback) {
+            super(callback);
+        }
+
+        @Override
+        public void onProgress(P progress) {
+            final ProgressCallback<P> callback = get();
+            if (callback == null) {
+                prune(subscription);
+            } else {
+                callback.onProgress(progress);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.impl.Scheduler;
+
+/**
+ * Tracer keeping the spans in memory, meant for tests.
+ * <p>
+ * Spans are listed in the order their stages settle, or their filter or pipe throws. Timestamps come from
+ * {@link #now()}, in milliseconds of the {@link Scheduler} clock, so they are reproducible under a
+ * {@link io.reinert.gdeferred.impl.VirtualScheduler}.
+ */
+public class InMemoryTracer implements Tracer {
+
+    private final List<RecordedSpan> spans = new ArrayList<RecordedSpan>();
+
+    @Override
+    public Span startSpan(String kind) {
+        return new RecordedSpan(kind, now());
+    }
+
+    /**
+     * Returns the spans of the stages already settled or failed.
+     *
+     * @return a copy of the finished spans
+     */
+    public synchronized List<RecordedSpan> getSpans() {
+        return new ArrayList<RecordedSpan>(spans);
+    }
+
+    public synchronized void clear() {
+        spans.clear();
+    }
+
+    protected long now() {
+        return Scheduler.get().now();
+    }
+
+    private synchronized void finish(RecordedSpan span) {
+        spans.add(span);
+    }
+
+    /**
+     * Span keeping the time of each event. Times of events not happened are {@code -1}.
+     */
+    public class RecordedSpan implements Span {
+
+        private final String kind;
+        private final long createdAt;
+        private String name;
+        private long upstreamSettledAt = -1;
+        private long executedAt = -1;
+        private long settledAt = -1;
+        private Promise.State upstreamState;
+        private Promise.State state;
+        private Throwable error;
+
+        RecordedSpan(String kind, long createdAt) {
+            this.kind = kind;
+            this.name = kind;
+            this.createdAt = createdAt;
+        }
+
+        @Override
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void upstreamSettled(Promise.State state) {
+            upstreamState = state;
+            upstreamSettledAt = now();
+        }
+
+        @Override
+        public void executed() {
+            executedAt = now();
+        }
+
+        @Override
+        public void failed(Throwable error) {
+            this.error = error;
+            finish(this);
+        }
+
+        @Override
+        public void settled(Promise.State state) {
+            this.state = state;
+            settledAt = now();
+            finish(this);
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public long getUpstreamSettledAt() {
+            return upstreamSettledAt;
+        }
+
+        public long getExecutedAt() {
+            return executedAt;
+        }
+
+        public long getSettledAt() {
+            return settledAt;
+        }
+
+        public Promise.State getUpstreamState() {
+            return upstreamState;
+        }
+
+        public Promise.State getState() {
+            return state;
+        }
+
+        /**
+         * Returns the exception thrown by the filter or pipe.
+         *
+         * @return the exception, or {@code null} if none was thrown
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * Returns the time spent in the filter or pipe.
+         *
+         * @return the execution time, or {@code -1} if not executed
+         */
+        public long getExecutionTime() {
+            return executedAt < 0 ? -1 : executedAt - upstreamSettledAt;
+        }
+
+        @Override
+        public String toString() {
+            return "Span{name=" + name + ", kind=" + kind + ", state=" + state + ", created=" + createdAt
+                    + ", upstreamSettled=" + upstreamSettledAt + ", executed=" + executedAt
+                    + ", settled=" + settledAt + (error == null ? "" : ", error=" + error) + '}';
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.trace;
+
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Record of a single promise stage, i.e., a promise created by {@code then(...)} with a filter or a pipe.
+ *
+ * @see Tracer#startSpan(String)
+ */
+public interface Span {
+
+    /**
+     * Called when the stage is named. Stages are created with their kind as name.
+     *
+     * @param name the stage name
+     */
+    void setName(String name);
+
+    /**
+     * Called when the promise the stage depends on settles.
+     *
+     * @param state the upstream state
+     */
+    void upstreamSettled(Promise.State state);
+
+    /**
+     * Called when the stage's filter or pipe returns.
+     */
+    void executed();
+
+    /**
+     * Called when the stage's filter or pipe throws. The stage then stays pending, so this is the last event.
+     *
+     * @param error the exception thrown
+     */
+    void failed(Throwable error);
+
+    /**
+     * Called when the stage's own promise settles, after its callbacks have run.
+     *
+     * @param state the stage state
+     */
+    void settled(Promise.State state);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.trace;
+
+/**
+ * Service provider creating a {@link Span} for each promise stage.
+ *
+ * @see Tracing#setTracer(Tracer)
+ */
+public interface Tracer {
+
+    /**
+     * Called when a stage is created.
+     *
+     * @param kind either {@code "filter"} or {@code "pipe"}
+     *
+     * @return the span recording the stage, or {@code null} to skip it
+     */
+    Span startSpan(String kind);
+}
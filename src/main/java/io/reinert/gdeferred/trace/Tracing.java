@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.trace;
+
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.impl.DeferredObject;
+
+/**
+ * Holder of the {@link Tracer} used by promise stages.
+ * <p>
+ * Tracing is off by default. When off, each stage only pays for a static read at creation and a null check per
+ * event.
+ *
+ * <pre>
+ * <code>
+ * InMemoryTracer tracer = new InMemoryTracer();
+ * Tracing.setTracer(tracer);
+ *
+ * Tracing.name(promise.then(new DonePipe&lt;...&gt;() { ... }), "load-user");
+ * </code>
+ * </pre>
+ */
+public final class Tracing {
+
+    private static volatile Tracer tracer;
+
+    private Tracing() {
+    }
+
+    public static Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Sets the tracer for the stages created from now on.
+     *
+     * @param tracer the tracer, or {@code null} to turn tracing off
+     */
+    public static void setTracer(Tracer tracer) {
+        Tracing.tracer = tracer;
+    }
+
+    /**
+     * Starts a span for a new stage.
+     *
+     * @param kind the stage kind
+     *
+     * @return the span, or {@code null} if tracing is off
+     */
+    public static Span startSpan(String kind) {
+        final Tracer current = tracer;
+        return current == null ? null : current.startSpan(kind);
+    }
+
+    /**
+     * Names the stage, if traced.
+     *
+     * @param promise   the stage returned by {@code then(...)}
+     * @param name      the stage name
+     * @param <T>       the promise type
+     *
+     * @return the same promise
+     */
+    public static <T extends Promise<?, ?, ?>> T name(T promise, String name) {
+        if (promise instanceof DeferredObject) {
+            ((DeferredObject<?, ?, ?>) promise).named(name);
+        }
+        return promise;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.Deferred;
+
+/**
+ * GWT version of {@link CountdownDeferred}. The browser runs a single thread, so the remaining count is a plain int.
+ *
+ * @param <F> Type of the failure
+ */
+public class CountdownDeferred<F> extends DeferredObject<Void, F, Integer> {
+
+    private static final int FAILED = -1;
+
+    private int remaining;
+
+    public CountdownDeferred(int parties) {
+        if (parties < 0) {
+            throw new IllegalArgumentException("Parties cannot be negative");
+        }
+        this.remaining = parties;
+
+        if (parties == 0) {
+            resolve(null);
+        } else {
+            notify(parties);
+        }
+    }
+
+    public boolean arrive() {
+        if (remaining <= 0) return false;
+        if (--remaining == 0) {
+            resolve(null);
+        } else if (isPending()) {
+            notify(remaining);
+        }
+        return true;
+    }
+
+    public boolean abort(F reason) {
+        if (remaining <= 0) return false;
+        reject(reason);
+        return true;
+    }
+
+    @Override
+    public Deferred<Void, F, Integer> resolve(Void resolve) {
+        remaining = 0;
+        return super.resolve(resolve);
+    }
+
+    @Override
+    public Deferred<Void, F, Integer> reject(F reject) {
+        remaining = FAILED;
+        return super.reject(reject);
+    }
+
+    @Override
+    protected void expire() {
+        remaining = FAILED;
+        super.expire();
+    }
+
+    public int remaining() {
+        return Math.max(0, remaining);
+    }
+}
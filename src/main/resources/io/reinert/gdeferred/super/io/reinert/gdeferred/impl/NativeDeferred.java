@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.BatchProgressCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.context.Contexts;
+
+/**
+ * GWT version of {@link NativeDeferred}.
+ * <p>
+ * Each callback invocation is queued as a microtask of the native {@code Promise}, so callbacks interleave with
+ * native async code. The context attached when the callback is triggered is captured and attached again around
+ * the microtask. Without a native {@code Promise}, callbacks are dispatched synchronously.
+ *
+ * @param <D> type of DoneCallback
+ * @param <F> type of FailCallback
+ * @param <P> type of ProgressCallback
+ */
+public class NativeDeferred<D, F, P> extends DeferredObject<D, F, P> {
+
+    private static final boolean SUPPORTED = hasNativePromise();
+
+    private JavaScriptObject nativePromise;
+
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Creates a deferred settled by the given native promise (or any thenable).
+     *
+     * @param thenable  the native promise
+     * @param <D>       the done type
+     * @param <F>       the fail type
+     *
+     * @return a deferred following the native promise
+     */
+    public static <D, F> NativeDeferred<D, F, Void> wrap(JavaScriptObject thenable) {
+        final NativeDeferred<D, F, Void> deferred = new NativeDeferred<D, F, Void>();
+        subscribe(thenable, deferred);
+        return deferred;
+    }
+
+    /**
+     * Returns a native promise that settles with this deferred's outcome.
+     * Useful to hand this deferred over to native async code.
+     *
+     * @return a native promise
+     */
+    public JavaScriptObject toNative() {
+        if (nativePromise == null) {
+            nativePromise = newNativePromise();
+        }
+        return nativePromise;
+    }
+
+    @Override
+    protected void triggerAlways(final AlwaysCallback<D, F> callback, final D resolve, final F reject) {
+        if (!SUPPORTED) {
+            super.triggerAlways(callback, resolve, reject);
+            return;
+        }
+        final State settled = state;
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callback.onAlways(settled, resolve, reject);
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "An uncaught exception occurred in a AlwaysCallback", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void triggerDone(final DoneCallback<D> callback, final D resolved) {
+        if (!SUPPORTED) {
+            super.triggerDone(callback, resolved);
+            return;
+        }
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callback.onDone(resolved);
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "An uncaught exception occurred in a DoneCallback", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void triggerFail(final FailCallback<F> callback, final F rejected) {
+        if (!SUPPORTED) {
+            super.triggerFail(callback, rejected);
+            return;
+        }
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callback.onFail(rejected);
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "An uncaught exception occurred in a FailCallback", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void triggerProgress(final ProgressCallback<P> callback, final P progress) {
+        if (!SUPPORTED) {
+            super.triggerProgress(callback, progress);
+            return;
+        }
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callback.onProgress(progress);
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "An uncaught exception occurred in a ProgressCallback", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void triggerProgressBatch(final BatchProgressCallback<P> callback, final List<P> batch) {
+        if (!SUPPORTED) {
+            super.triggerProgressBatch(callback, batch);
+            return;
+        }
+        dispatch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callback.onProgressBatch(batch);
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "An uncaught exception occurred in a ProgressCallback", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues the task as a microtask, within the context current at the time of queueing.
+     */
+    private static void dispatch(final Runnable task) {
+        final Object context = Contexts.capture();
+        if (context == null) {
+            enqueue(task);
+            return;
+        }
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                final Object previous = Contexts.attach(context);
+                try {
+                    task.run();
+                } finally {
+                    Contexts.restore(previous);
+                }
+            }
+        });
+    }
+
+    private void bind(final JavaScriptObject resolve, final JavaScriptObject reject) {
+        done(new DoneCallback<D>() {
+            @Override
+            public void onDone(D result) {
+                call(resolve, result);
+            }
+        });
+        fail(new FailCallback<F>() {
+            @Override
+            public void onFail(F result) {
+                call(reject, result);
+            }
+        });
+    }
+
+    private native JavaScriptObject newNativePromise() /*-{
+        var self = this;
+        return new $wnd.Promise(function(resolve, reject) {
+            self.@io.reinert.gdeferred.impl.NativeDeferred::bind(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JavaScriptObject;)(resolve, reject);
+        });
+    }-*/;
+
+    private static native boolean hasNativePromise() /*-{
+        return typeof $wnd.Promise === 'function';
+    }-*/;
+
+    private static native void call(JavaScriptObject fn, Object value) /*-{
+        fn(value);
+    }-*/;
+
+    private static native void enqueue(Runnable task) /*-{
+        $wnd.Promise.resolve().then($entry(function() {
+            task.@java.lang.Runnable::run()();
+        }));
+    }-*/;
+
+    private static native void subscribe(JavaScriptObject thenable, NativeDeferred<?, ?, ?> deferred) /*-{
+        thenable.then($entry(function(value) {
+            deferred.@io.reinert.gdeferred.impl.DeferredObject::resolve(Ljava/lang/Object;)(value);
+        }), $entry(function(reason) {
+            deferred.@io.reinert.gdeferred.impl.DeferredObject::reject(Ljava/lang/Object;)(reason);
+        }));
+    }-*/;
+}
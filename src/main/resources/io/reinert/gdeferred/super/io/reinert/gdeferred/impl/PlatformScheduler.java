@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * GWT version of {@link PlatformScheduler}, backed by the browser clock and timer.
+ */
+final class PlatformScheduler extends Scheduler {
+
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public Scheduled schedule(final Runnable task, long delayMillis) {
+        final Task scheduled = new Task(task);
+        scheduled.timer.schedule((int) Math.max(0, Math.min(Integer.MAX_VALUE, delayMillis)));
+        return scheduled;
+    }
+
+    private static final class Task implements Scheduled {
+
+        private boolean pending = true;
+        private final Timer timer;
+
+        Task(final Runnable task) {
+            this.timer = new Timer() {
+                @Override
+                public void run() {
+                    pending = false;
+                    task.run();
+                }
+            };
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!pending) return false;
+            pending = false;
+            timer.cancel();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.SubscribablePromise;
+import io.reinert.gdeferred.Subscription;
+
+/**
+ * GWT version of {@link WeakCallbacks}. Weak references are not available, so callbacks are held strongly until
+ * the returned subscription is released, typically when the owner widget is detached.
+ */
+public final class WeakCallbacks {
+
+    private WeakCallbacks() {
+    }
+
+    public static <D, F> Subscription always(SubscribablePromise<D, F, ?> promise, AlwaysCallback<D, F> callback) {
+        return promise.subscribeAlways(callback);
+    }
+
+    public static <D> Subscription done(SubscribablePromise<D, ?, ?> promise, DoneCallback<D> callback) {
+        return promise.subscribeDone(callback);
+    }
+
+    public static <F> Subscription fail(SubscribablePromise<?, F, ?> promise, FailCallback<F> callback) {
+        return promise.subscribeFail(callback);
+    }
+
+    public static <P> Subscription progress(SubscribablePromise<?, ?, P> promise, ProgressCallback<P> callback) {
+        return promise.subscribeProgress(callback);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import io.reinert.gdeferred.concurrent.EventLoopDispatcherTest;
+import io.reinert.gdeferred.concurrent.FanOutDeferredTest;
+import io.reinert.gdeferred.concurrent.ParallelPromisesTest;
+import io.reinert.gdeferred.impl.AllSettledPromiseTest;
+import io.reinert.gdeferred.impl.CallbackListTest;
+import io.reinert.gdeferred.impl.CircuitBreakerTest;
+import io.reinert.gdeferred.impl.CompactDeferredTest;
+import io.reinert.gdeferred.impl.ContextPropagationTest;
+import io.reinert.gdeferred.impl.CountdownDeferredTest;
+import io.reinert.gdeferred.impl.DeadlineTest;
+import io.reinert.gdeferred.impl.HedgedPromiseTest;
+import io.reinert.gdeferred.impl.IteratedPromiseTest;
+import io.reinert.gdeferred.impl.LazyDeferredTest;
+import io.reinert.gdeferred.impl.MappedPromiseTest;
+import io.reinert.gdeferred.impl.NativeDeferredTest;
+import io.reinert.gdeferred.impl.PlatformSchedulerTest;
+import io.reinert.gdeferred.impl.ProgressReplayTest;
+import io.reinert.gdeferred.impl.RateLimiterTest;
+import io.reinert.gdeferred.impl.ReducedPromiseTest;
+import io.reinert.gdeferred.impl.StageListenerTest;
+import io.reinert.gdeferred.impl.StreamTest;
+import io.reinert.gdeferred.impl.WeakCallbacksTest;
+import io.reinert.gdeferred.trace.TracingTest;
+
+/**
+ * JVM tests run by surefire.
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+        EventLoopDispatcherTest.class,
+        FanOutDeferredTest.class,
+        ParallelPromisesTest.class,
+        AllSettledPromiseTest.class,
+        CallbackListTest.class,
+        CircuitBreakerTest.class,
+        CompactDeferredTest.class,
+        ContextPropagationTest.class,
+        CountdownDeferredTest.class,
+        DeadlineTest.class,
+        HedgedPromiseTest.class,
+        IteratedPromiseTest.class,
+        LazyDeferredTest.class,
+        MappedPromiseTest.class,
+        NativeDeferredTest.class,
+        PlatformSchedulerTest.class,
+        ProgressReplayTest.class,
+        RateLimiterTest.class,
+        ReducedPromiseTest.class,
+        StageListenerTest.class,
+        StreamTest.class,
+        WeakCallbacksTest.class,
+        TracingTest.class
+})
+public class GDeferredTestSuite {
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.impl.CompactDeferred;
+import io.reinert.gdeferred.impl.DeferredObject;
+
+/**
+ * Footprint and throughput of {@link CompactDeferred} against {@link DeferredObject}.
+ * <p>
+ * {@code pending} builds a deferred with its callbacks and leaves it pending: run with {@code -prof gc}, the
+ * {@code gc.alloc.rate.norm} figure is the size in bytes of a pending deferred. {@code resolve} also settles it, so its
+ * score is the throughput of a whole promise lifecycle.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompactDeferredBenchmark {
+
+    private static final DoneCallback<Integer> DONE = new DoneCallback<Integer>() {
+        @Override
+        public void onDone(Integer result) {
+        }
+    };
+
+    private static final FailCallback<Void> FAIL = new FailCallback<Void>() {
+        @Override
+        public void onFail(Void result) {
+        }
+    };
+
+    @Param({"0", "1", "2", "8"})
+    public int callbacks;
+
+    @Param({"compact", "object"})
+    public String implementation;
+
+    @Benchmark
+    public Object pending() {
+        return create();
+    }
+
+    @Benchmark
+    public Object resolve() {
+        return create().resolve(1);
+    }
+
+    private Deferred<Integer, Void, Void> create() {
+        final Deferred<Integer, Void, Void> deferred = "compact".equals(implementation)
+                ? new CompactDeferred<Integer, Void, Void>()
+                : new DeferredObject<Integer, Void, Void>();
+        for (int i = 0; i < callbacks; i++) {
+            if ((i & 1) == 0) {
+                deferred.done(DONE);
+            } else {
+                deferred.fail(FAIL);
+            }
+        }
+        return deferred;
+    }
+}
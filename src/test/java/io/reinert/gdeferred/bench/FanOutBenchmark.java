@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.bench;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.concurrent.FanOutDeferred;
+import io.reinert.gdeferred.impl.DeferredObject;
+
+/**
+ * Latency of resolve() by the number of done callbacks, serial against fanned out.
+ * <p>
+ * Each callback burns {@code work} tokens of CPU. The deferred is rebuilt before each invocation, so only the
+ * resolve is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FanOutBenchmark {
+
+    @Param({"16", "256", "1024", "4096", "16384"})
+    public int listeners;
+
+    @Param({"0", "64"})
+    public int work;
+
+    @Param({"serial", "fanout"})
+    public String dispatch;
+
+    private ExecutorService executor;
+    private DeferredObject<Integer, Void, Void> deferred;
+
+    @Setup(Level.Trial)
+    public void startExecutor() {
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopExecutor() {
+        executor.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void register() {
+        deferred = "fanout".equals(dispatch)
+                ? new FanOutDeferred<Integer, Void, Void>(executor)
+                : new DeferredObject<Integer, Void, Void>();
+        final long tokens = work;
+        final DoneCallback<Integer> callback = new DoneCallback<Integer>() {
+            @Override
+            public void onDone(Integer result) {
+                Blackhole.consumeCPU(tokens);
+            }
+        };
+        for (int i = 0; i < listeners; i++) {
+            deferred.done(callback);
+        }
+    }
+
+    @Benchmark
+    public Object resolve() {
+        return deferred.resolve(1);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.BatchProgressCallback;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.Promise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopDispatcherTest {
+
+    @Test
+    public void queuesSettlesUntilBound() {
+        final EventLoopDispatcher dispatcher = new EventLoopDispatcher();
+        final EventLoopDeferred<String, Void, Void> deferred = new EventLoopDeferred<String, Void, Void>(dispatcher);
+        final List<String> results = new ArrayList<String>();
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                results.add(result);
+            }
+        });
+
+        assertFalse(dispatcher.inLoop());
+        deferred.resolve("ok");
+        assertEquals(Promise.State.PENDING, deferred.state());
+
+        dispatcher.bind();
+        assertTrue(dispatcher.inLoop());
+        assertEquals(2, dispatcher.drain());
+        assertEquals(Promise.State.RESOLVED, deferred.state());
+        assertEquals(Arrays.asList("ok"), results);
+    }
+
+    @Test
+    public void runsCallbacksOnTheLoopOnly() {
+        final EventLoopDispatcher dispatcher = new EventLoopDispatcher().bind();
+        final EventLoopDeferred<String, Void, Void> deferred = new EventLoopDeferred<String, Void, Void>(dispatcher);
+        final List<String> results = new ArrayList<String>();
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                results.add(result);
+            }
+        });
+
+        deferred.resolve("ok");
+
+        assertEquals(Promise.State.RESOLVED, deferred.state());
+        assertTrue(results.isEmpty());
+        assertEquals(1, dispatcher.drain());
+        assertEquals(Arrays.asList("ok"), results);
+    }
+
+    @Test
+    public void notifyBatchDoesNotKeepTheCallersList() {
+        final EventLoopDispatcher dispatcher = new EventLoopDispatcher().bind();
+        final EventLoopDeferred<Void, Void, Integer> deferred = new EventLoopDeferred<Void, Void, Integer>(dispatcher);
+        final List<Integer> received = new ArrayList<Integer>();
+        deferred.progress(new BatchProgressCallback<Integer>() {
+            @Override
+            public void onProgressBatch(List<Integer> progress) {
+                received.addAll(progress);
+            }
+
+            @Override
+            public void onProgress(Integer progress) {
+                received.add(progress);
+            }
+        });
+
+        final List<Integer> values = new ArrayList<Integer>(Arrays.asList(1, 2, 3));
+        deferred.notifyBatch(values);
+        values.clear();
+        dispatcher.drain();
+
+        assertEquals(Arrays.asList(1, 2, 3), received);
+    }
+
+    @Test
+    public void drainsUpToTheBatchLimit() {
+        final EventLoopDispatcher dispatcher = new EventLoopDispatcher(Thread.currentThread(), 2, null);
+        for (int i = 0; i < 3; i++) {
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+
+        assertEquals(2, dispatcher.drain());
+        assertEquals(1, dispatcher.pending());
+        assertEquals(1, dispatcher.drain());
+        assertEquals(0, dispatcher.drain());
+    }
+
+    @Test
+    public void signalsTheWakeupForWorkFromOtherThreads() throws InterruptedException {
+        final List<Runnable> signals = new ArrayList<Runnable>();
+        final EventLoopDispatcher dispatcher = new EventLoopDispatcher(Thread.currentThread(), 16, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                signals.add(command);
+            }
+        });
+        final int[] runs = new int[1];
+
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runs[0]++;
+                    }
+                });
+            }
+        });
+        producer.start();
+        producer.join();
+
+        assertEquals(1, signals.size());
+        signals.get(0).run();
+        assertEquals(1, runs[0]);
+    }
+
+    @Test
+    public void signalsTheWakeupAgainWhenTheBatchLimitLeavesWork() throws InterruptedException {
+        final List<Runnable> signals = new ArrayList<Runnable>();
+        final EventLoopDispatcher dispatcher = new EventLoopDispatcher(Thread.currentThread(), 2, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                signals.add(command);
+            }
+        });
+        final int[] runs = new int[1];
+
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 5; i++) {
+                    dispatcher.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            runs[0]++;
+                        }
+                    });
+                }
+            }
+        });
+        producer.start();
+        producer.join();
+
+        // The loop only drains when signaled
+        int drains = 0;
+        while (!signals.isEmpty()) {
+            signals.remove(0).run();
+            drains++;
+        }
+        assertEquals(5, runs[0]);
+        assertEquals(0, dispatcher.pending());
+        assertEquals(3, drains);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsDrainingFromAnotherThread() {
+        final EventLoopDispatcher dispatcher = new EventLoopDispatcher(new Thread(), 16, null);
+
+        dispatcher.drain();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsDrainingBeforeBinding() {
+        new EventLoopDispatcher().drain();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.context.ContextPropagator;
+import io.reinert.gdeferred.context.Contexts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FanOutDeferredTest {
+
+    private static final int CALLBACKS = 100;
+
+    @Test(timeout = 10000)
+    public void runsEveryCallbackOnce() {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEveryCallbackRunsOnce(new FanOutDeferred<String, Void, Void>(executor, 10, 7));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void completesWhenTheOnlyWorkerIsBusy() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try {
+            assertEveryCallbackRunsOnce(new FanOutDeferred<String, Void, Void>(executor, 10, 7));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void runsTheChunksRejectedByTheExecutor() {
+        assertEveryCallbackRunsOnce(new FanOutDeferred<String, Void, Void>(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        }, 10, 7));
+    }
+
+    @Test(timeout = 10000)
+    public void attachesTheRegisteringContextOnWorkers() {
+        final ThreadLocal<Object> current = new ThreadLocal<Object>();
+        Contexts.setPropagator(new ContextPropagator() {
+            @Override
+            public Object capture() {
+                return current.get();
+            }
+
+            @Override
+            public Object attach(Object snapshot) {
+                final Object previous = current.get();
+                current.set(snapshot);
+                return previous;
+            }
+
+            @Override
+            public void restore(Object previous) {
+                current.set(previous);
+            }
+        });
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final FanOutDeferred<String, Void, Void> deferred = new FanOutDeferred<String, Void, Void>(executor, 10, 7);
+            final AtomicReferenceArray<Object> seen = new AtomicReferenceArray<Object>(CALLBACKS);
+            for (int i = 0; i < CALLBACKS; i++) {
+                final int index = i;
+                current.set("context-" + i);
+                deferred.done(new DoneCallback<String>() {
+                    @Override
+                    public void onDone(String result) {
+                        seen.set(index, current.get());
+                    }
+                });
+            }
+            current.remove();
+
+            deferred.resolve("ok");
+
+            for (int i = 0; i < CALLBACKS; i++) {
+                assertEquals("context-" + i, seen.get(i));
+            }
+            assertNull(current.get());
+        } finally {
+            Contexts.setPropagator(null);
+            executor.shutdown();
+        }
+    }
+
+    private static void assertEveryCallbackRunsOnce(FanOutDeferred<String, Void, Void> deferred) {
+        final AtomicIntegerArray runs = new AtomicIntegerArray(CALLBACKS);
+        for (int i = 0; i < CALLBACKS; i++) {
+            final int index = i;
+            deferred.done(new DoneCallback<String>() {
+                @Override
+                public void onDone(String result) {
+                    runs.incrementAndGet(index);
+                }
+            });
+        }
+
+        deferred.resolve("ok");
+
+        for (int i = 0; i < CALLBACKS; i++) {
+            assertEquals("callback " + i, 1, runs.get(i));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelPromisesTest {
+
+    private static final int ITEMS = 64;
+
+    private final ForkJoinPool pool = new ForkJoinPool(8);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void runsAtMostParallelismChunksAtOnce() throws InterruptedException {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final Promise<List<Integer>, Throwable, Integer> promise = ParallelPromises.mapAsync(range(ITEMS),
+                new DoneFilter<Integer, Integer>() {
+                    @Override
+                    public Integer filterDone(Integer item) {
+                        final int now = active.incrementAndGet();
+                        int max;
+                        while (now > (max = maxActive.get()) && !maxActive.compareAndSet(max, now)) {
+                            // Retry until the maximum is published
+                        }
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        active.decrementAndGet();
+                        return item * 2;
+                    }
+                }, pool, 3);
+
+        await(promise);
+
+        assertEquals(Promise.State.RESOLVED, promise.state());
+        assertTrue(maxActive.get() <= 3);
+        final List<Integer> results = resolved(promise);
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(Integer.valueOf(i * 2), results.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void notifiesTheCompletedCountAfterEachChunk() throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Integer> progress = Collections.synchronizedList(new ArrayList<Integer>());
+        final Promise<List<Integer>, Throwable, Integer> promise = ParallelPromises.mapAsync(range(ITEMS),
+                new DoneFilter<Integer, Integer>() {
+                    @Override
+                    public Integer filterDone(Integer item) {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return item;
+                    }
+                }, pool, 4);
+        promise.progress(new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer completed) {
+                progress.add(completed);
+            }
+        });
+        start.countDown();
+
+        await(promise);
+
+        assertEquals(4, progress.size());
+        for (int i = 0; i < progress.size(); i++) {
+            assertEquals(Integer.valueOf((i + 1) * ITEMS / 4), progress.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void rejectsWithTheFirstFailureAndStopsTheOtherChunks() throws InterruptedException {
+        final IllegalStateException error = new IllegalStateException();
+        final AtomicInteger filtered = new AtomicInteger();
+        final Promise<List<Integer>, Throwable, Integer> promise = ParallelPromises.mapAsync(range(ITEMS * 16),
+                new DoneFilter<Integer, Integer>() {
+                    @Override
+                    public Integer filterDone(Integer item) {
+                        filtered.incrementAndGet();
+                        if (item == 0) throw error;
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return item;
+                    }
+                }, pool, 2);
+
+        await(promise);
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(Promise.State.REJECTED, promise.state());
+        final Object[] reason = new Object[1];
+        promise.always(new AlwaysCallback<List<Integer>, Throwable>() {
+            @Override
+            public void onAlways(Promise.State state, List<Integer> resolved, Throwable rejected) {
+                reason[0] = rejected;
+            }
+        });
+        assertSame(error, reason[0]);
+        // The failing chunk stops at once, and the other one at its next item
+        assertTrue(filtered.get() < ITEMS * 16 / 2);
+    }
+
+    private static List<Integer> range(int size) {
+        final List<Integer> items = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    private static <D, F> void await(Promise<D, F, ?> promise) throws InterruptedException {
+        final CountDownLatch settled = new CountDownLatch(1);
+        promise.always(new AlwaysCallback<D, F>() {
+            @Override
+            public void onAlways(Promise.State state, D resolved, F rejected) {
+                settled.countDown();
+            }
+        });
+        settled.await();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <D, F> D resolved(Promise<D, F, ?> promise) {
+        final Object[] value = new Object[1];
+        promise.always(new AlwaysCallback<D, F>() {
+            @Override
+            public void onAlways(Promise.State state, D resolved, F rejected) {
+                value[0] = resolved;
+            }
+        });
+        return (D) value[0];
+    }
+}
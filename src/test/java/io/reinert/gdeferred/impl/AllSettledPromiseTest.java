@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AllSettledPromiseTest {
+
+    @Test
+    public void waitsForEveryInputWhateverItsOutcome() {
+        final Deferred<String, String, Void> first = new DeferredObject<String, String, Void>();
+        final Deferred<String, String, Void> second = new DeferredObject<String, String, Void>();
+        final Deferred<String, String, Void> third = new DeferredObject<String, String, Void>();
+        final Promise<Outcomes<String, String>, Void, Integer> all =
+                Promises.allSettled(Arrays.<Promise<String, String, ?>>asList(first, second, third));
+        final List<Integer> progress = new ArrayList<Integer>();
+        all.progress(new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer value) {
+                progress.add(value);
+            }
+        });
+
+        second.reject("boom");
+        third.resolve("c");
+        assertEquals(Promise.State.PENDING, all.state());
+
+        first.resolve("a");
+        final Outcomes<String, String> outcomes = resolvedValue(all);
+        assertEquals(Arrays.asList(1, 2, 3), progress);
+        assertEquals(3, outcomes.size());
+        assertEquals(2, outcomes.countResolved());
+        assertEquals(1, outcomes.countRejected());
+        assertEquals("a", outcomes.resolved(0));
+        assertTrue(outcomes.isRejected(1));
+        assertEquals("boom", outcomes.rejected(1));
+        assertNull(outcomes.resolved(1));
+        assertEquals(Promise.State.RESOLVED, outcomes.state(2));
+        assertNull(outcomes.rejected(2));
+    }
+
+    @Test
+    public void readsInputsThatAreAlreadySettled() {
+        final Deferred<String, String, Void> resolved = new DeferredObject<String, String, Void>();
+        final Deferred<String, String, Void> rejected = new DeferredObject<String, String, Void>();
+        resolved.resolve("a");
+        rejected.reject("boom");
+
+        final Outcomes<String, String> outcomes = resolvedValue(
+                Promises.allSettled(Arrays.<Promise<String, String, ?>>asList(resolved, rejected)));
+
+        assertEquals("a", outcomes.resolved(0));
+        assertEquals("boom", outcomes.rejected(1));
+    }
+
+    @Test
+    public void resolvesAnEmptyInputRightAway() {
+        final List<Promise<String, String, ?>> none = Collections.emptyList();
+
+        final Outcomes<String, String> outcomes = resolvedValue(Promises.allSettled(none));
+
+        assertEquals(0, outcomes.size());
+        assertEquals(0, outcomes.countResolved());
+    }
+
+    @Test
+    public void exposesOutcomesAsAReadOnlyView() {
+        assertTrue(Modifier.isFinal(Outcomes.class.getModifiers()));
+        for (Constructor<?> constructor : Outcomes.class.getDeclaredConstructors()) {
+            assertFalse(Modifier.isPublic(constructor.getModifiers()));
+        }
+        for (Method method : Outcomes.class.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers())) {
+                assertFalse(method.getName(), method.getName().startsWith("set"));
+                assertFalse(method.getName(), method.getReturnType() == Void.TYPE);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.Subscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CallbackListTest {
+
+    @Test
+    public void prependAllMovesEntriesAndHandlesToTheFront() {
+        final CallbackList<String> target = listOf("a", "b");
+        final CallbackList<String> source = new CallbackList<String>();
+        final Subscription x = source.subscribe("x", null);
+        source.add("y", null);
+
+        target.prependAll(source);
+
+        assertEquals(Arrays.asList("x", "y", "a", "b"), target.toList());
+        assertTrue(source.isEmpty());
+        x.unsubscribe();
+        assertEquals(Arrays.asList("y", "a", "b"), target.toList());
+    }
+
+    @Test
+    public void prependDuringDispatchDoesNotShiftTheRunningLoop() {
+        final CallbackList<String> target = listOf("a", "b", "c");
+        final List<String> visited = new ArrayList<String>();
+
+        final int size = target.beginDispatch();
+        try {
+            for (int i = 0; i < size; i++) {
+                final String item = target.get(i);
+                if (item == null) continue;
+                visited.add(item);
+                if (i == 0) {
+                    target.prependAll(listOf("x", "y"));
+                    // A nested dispatch leaves the held entries aside as well
+                    final int nested = target.beginDispatch();
+                    assertEquals(3, nested);
+                    target.endDispatch();
+                }
+            }
+        } finally {
+            target.endDispatch();
+        }
+
+        assertEquals(Arrays.asList("a", "b", "c"), visited);
+        assertEquals(Arrays.asList("x", "y", "a", "b", "c"), target.toList());
+    }
+
+    @Test
+    public void heldEntriesAreListedAndCanBeUnsubscribed() {
+        final CallbackList<String> target = listOf("a");
+        final CallbackList<String> source = new CallbackList<String>();
+        final Subscription x = source.subscribe("x", null);
+
+        target.beginDispatch();
+        target.prependAll(source);
+        assertEquals(Arrays.asList("x", "a"), target.toList());
+        x.unsubscribe();
+        assertFalse(x.isSubscribed());
+        target.endDispatch();
+
+        assertEquals(Arrays.asList("a"), target.toList());
+    }
+
+    @Test
+    public void sourceDispatchSkipsTheMovedEntries() {
+        final CallbackList<String> source = listOf("x", "y");
+        final CallbackList<String> target = listOf("a");
+        final List<String> visited = new ArrayList<String>();
+
+        final int size = source.beginDispatch();
+        try {
+            for (int i = 0; i < size; i++) {
+                final String item = source.get(i);
+                if (item == null) continue;
+                visited.add(item);
+                target.prependAll(source);
+            }
+        } finally {
+            source.endDispatch();
+        }
+
+        assertEquals(Arrays.asList("x"), visited);
+        assertEquals(Arrays.asList("x", "y", "a"), target.toList());
+        assertTrue(source.isEmpty());
+    }
+
+    @Test
+    public void entriesHeldBySourceGoInFrontOfItsOwn() {
+        final CallbackList<String> source = listOf("x");
+        final CallbackList<String> target = listOf("a");
+
+        source.beginDispatch();
+        source.prependAll(listOf("w"));
+        target.prependAll(source);
+        source.endDispatch();
+
+        assertEquals(Arrays.asList("w", "x", "a"), target.toList());
+        assertTrue(source.isEmpty());
+    }
+
+    @Test
+    public void copyToSkipsRemovedEntriesAndKeepsContextsAligned() {
+        final CallbackList<String> list = new CallbackList<String>();
+        list.add("a", "ctx-a");
+        final Subscription b = list.subscribe("b", "ctx-b");
+        list.add("c", null);
+        list.beginDispatch();
+        list.prependAll(listOf("x"));
+        b.unsubscribe();
+
+        assertEquals(3, list.liveSize());
+        final Object[] callbacks = new Object[list.liveSize()];
+        final Object[] contexts = new Object[list.liveSize()];
+        assertEquals(3, list.copyTo(callbacks, contexts, 0));
+        assertEquals(Arrays.<Object>asList("x", "a", "c"), Arrays.asList(callbacks));
+        assertEquals(Arrays.<Object>asList(null, "ctx-a", null), Arrays.asList(contexts));
+        list.endDispatch();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedGettersReturnAReadOnlySnapshot() {
+        final DeferredObject<String, Void, Void> deferred = new DeferredObject<String, Void, Void>();
+        final DoneCallback<String> callback = new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+            }
+        };
+        deferred.done(callback);
+
+        final List<DoneCallback<String>> callbacks = deferred.getDoneCallbacks();
+        assertEquals(Arrays.asList(callback), callbacks);
+        try {
+            callbacks.add(callback);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException expected) {
+            assertEquals(1, deferred.viewDoneCallbacks().size());
+        }
+    }
+
+    private static CallbackList<String> listOf(String... items) {
+        final CallbackList<String> list = new CallbackList<String>();
+        for (String item : items) {
+            list.add(item, null);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.PromiseSupplier;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private VirtualScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new VirtualScheduler();
+        Scheduler.set(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        Scheduler.set(null);
+    }
+
+    @Test
+    public void opensOnceTheFailuresReachTheThreshold() {
+        final CircuitBreaker breaker = new CircuitBreaker(4, 2, 1000);
+        breaker.call(supply(rejected()));
+        breaker.call(supply(resolved()));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(2, breaker.bufferedCalls());
+        assertEquals(0.5f, breaker.failureRate(), 0f);
+
+        breaker.call(supply(rejected()));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        final Promise<String, Object, Void> refused = breaker.call(supply(pending()));
+        assertTrue(rejectedValue(refused) instanceof CircuitOpenException);
+        assertEquals(1, breaker.rejectedCalls());
+    }
+
+    @Test
+    public void countsSlowCallsAsFailures() {
+        final CircuitBreaker breaker = new CircuitBreaker(2, 1, 1000).withSlowCallThreshold(200);
+        final DeferredObject<String, Object, Void> slow = pending();
+        breaker.call(supply(slow));
+
+        scheduler.advanceBy(200);
+        slow.resolve("late");
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void opensWhileTheSlowCallsHang() {
+        final CircuitBreaker breaker = new CircuitBreaker(4, 2, 1000).withSlowCallThreshold(200);
+        final DeferredObject<String, Object, Void> first = pending();
+        breaker.call(supply(first));
+        breaker.call(supply(pending()));
+        breaker.call(supply(resolved()));
+
+        scheduler.advanceBy(199);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(1, breaker.bufferedCalls());
+
+        scheduler.advanceBy(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        // The hanging call was already counted
+        first.reject("late");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void callsSettledInTimeAreNotCountedAsSlow() {
+        final CircuitBreaker breaker = new CircuitBreaker(2, 1, 1000).withSlowCallThreshold(200);
+        final DeferredObject<String, Object, Void> call = pending();
+        breaker.call(supply(call));
+
+        scheduler.advanceBy(100);
+        call.resolve("ok");
+        scheduler.advanceBy(200);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(1, breaker.bufferedCalls());
+        assertEquals(0, breaker.slowCalls());
+    }
+
+    @Test
+    public void closesWhenTheProbesSucceed() {
+        final CircuitBreaker breaker = new CircuitBreaker(1, 1, 1000).withHalfOpenProbes(2);
+        breaker.call(supply(rejected()));
+
+        scheduler.advanceBy(999);
+        assertTrue(rejectedValue(breaker.call(supply(pending()))) instanceof CircuitOpenException);
+
+        scheduler.advanceBy(1);
+        breaker.call(supply(resolved()));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.call(supply(resolved()));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void reopensWhenAProbeFails() {
+        final CircuitBreaker breaker = new CircuitBreaker(1, 1, 1000);
+        breaker.call(supply(rejected()));
+
+        scheduler.advanceBy(1000);
+        breaker.call(supply(rejected()));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        scheduler.advanceBy(999);
+        assertTrue(rejectedValue(breaker.call(supply(pending()))) instanceof CircuitOpenException);
+    }
+
+    @Test
+    public void reopensWhenAProbeNeverSettles() {
+        final CircuitBreaker breaker = new CircuitBreaker(1, 1, 1000);
+        breaker.call(supply(rejected()));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        scheduler.advanceBy(1000);
+        final DeferredObject<String, Object, Void> probe = new DeferredObject<String, Object, Void>();
+        assertSame(probe, breaker.call(supply(probe)));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(rejectedValue(breaker.call(supply(pending()))) instanceof CircuitOpenException);
+
+        scheduler.advanceBy(1000);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        // The stale probe no longer decides the state
+        probe.resolve("late");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        scheduler.advanceBy(1000);
+        breaker.call(supply(resolved()));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    static DeferredObject<String, Object, Void> pending() {
+        return new DeferredObject<String, Object, Void>();
+    }
+
+    static Promise<String, Object, Void> resolved() {
+        return pending().resolve("ok");
+    }
+
+    static Promise<String, Object, Void> rejected() {
+        return pending().reject("down");
+    }
+
+    static PromiseSupplier<String, Object, Void> supply(final Promise<String, Object, Void> promise) {
+        return new PromiseSupplier<String, Object, Void>() {
+            @Override
+            public Promise<String, Object, Void> get() {
+                return promise;
+            }
+        };
+    }
+}
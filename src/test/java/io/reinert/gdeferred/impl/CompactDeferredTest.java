@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Subscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CompactDeferredTest {
+
+    private final CompactDeferred<String, Void, Integer> deferred = new CompactDeferred<String, Void, Integer>();
+    private final List<String> calls = new ArrayList<String>();
+
+    @Test
+    public void unsubscribingTheLastCallbackDuringNotifyEndsTheLoop() {
+        final Subscription[] last = new Subscription[1];
+        deferred.subscribeProgress(new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer progress) {
+                calls.add("a" + progress);
+                last[0].unsubscribe();
+            }
+        });
+        deferred.subscribeProgress(record("b"));
+        last[0] = deferred.subscribeProgress(record("c"));
+
+        deferred.notify(1);
+        deferred.subscribeProgress(record("d"));
+        deferred.notify(2);
+
+        assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "d2"), calls);
+    }
+
+    @Test
+    public void unsubscribedCallbacksAreUnlinked() {
+        final Subscription a = deferred.subscribeProgress(record("a"));
+        final Subscription b = deferred.subscribeProgress(record("b"));
+        a.unsubscribe();
+        b.unsubscribe();
+        deferred.subscribeProgress(record("c"));
+        a.unsubscribe();
+
+        deferred.notify(1);
+
+        assertEquals(Arrays.asList("c1"), calls);
+    }
+
+    @Test
+    public void subscriptionsOnSettledDeferredsAreInactive() {
+        deferred.resolve("ok");
+
+        final Subscription subscription = deferred.subscribeDone(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                calls.add(result);
+            }
+        });
+
+        assertEquals(Arrays.asList("ok"), calls);
+        assertFalse(subscription.isSubscribed());
+    }
+
+    private ProgressCallback<Integer> record(final String name) {
+        return new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer progress) {
+                calls.add(name + progress);
+            }
+        };
+    }
+}
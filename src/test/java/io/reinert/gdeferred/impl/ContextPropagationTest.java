@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.context.ContextPropagator;
+import io.reinert.gdeferred.context.Contexts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContextPropagationTest {
+
+    private static final ThreadLocal<Object> current = new ThreadLocal<Object>();
+
+    private final AtomicInteger captures = new AtomicInteger();
+    private final AtomicInteger attaches = new AtomicInteger();
+
+    private final ContextPropagator propagator = new ContextPropagator() {
+        @Override
+        public Object capture() {
+            captures.incrementAndGet();
+            return current.get();
+        }
+
+        @Override
+        public Object attach(Object snapshot) {
+            attaches.incrementAndGet();
+            final Object previous = current.get();
+            current.set(snapshot);
+            return previous;
+        }
+
+        @Override
+        public void restore(Object previous) {
+            current.set(previous);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        Contexts.setPropagator(null);
+        current.remove();
+    }
+
+    @Test(timeout = 10000)
+    public void callbacksSeeTheContextOfTheRegisteringThread() throws InterruptedException {
+        Contexts.setPropagator(propagator);
+        final DeferredObject<String, Void, Void> deferred = new DeferredObject<String, Void, Void>();
+        final List<Object> seen = new ArrayList<Object>();
+        current.set("registering");
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                seen.add(current.get());
+            }
+        });
+
+        final Thread settling = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                current.set("settling");
+                deferred.resolve("ok");
+                seen.add(current.get());
+            }
+        });
+        settling.start();
+        settling.join();
+
+        assertEquals(Arrays.<Object>asList("registering", "settling"), seen);
+    }
+
+    @Test
+    public void restoresThePreviousContextAfterACallbackThrows() {
+        Contexts.setPropagator(propagator);
+        final DeferredObject<String, Void, Void> deferred = new DeferredObject<String, Void, Void>();
+        current.set("registering");
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        current.set("settling");
+        deferred.resolve("ok");
+
+        assertEquals("settling", current.get());
+    }
+
+    @Test
+    public void aThrowingPropagatorDoesNotEscapeTheSettlement() {
+        Contexts.setPropagator(new ContextPropagator() {
+            @Override
+            public Object capture() {
+                return "snapshot";
+            }
+
+            @Override
+            public Object attach(Object snapshot) {
+                throw new IllegalStateException("attach");
+            }
+
+            @Override
+            public void restore(Object previous) {
+                throw new IllegalStateException("restore");
+            }
+        });
+        final DeferredObject<String, Void, Void> deferred = new DeferredObject<String, Void, Void>();
+        deferred.then(new Identity());
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+            }
+        });
+
+        deferred.resolve("ok");
+
+        assertTrue(deferred.isResolved());
+    }
+
+    @Test
+    public void theStageSlotKeepsItsSnapshot() {
+        Contexts.setPropagator(propagator);
+        final DeferredObject<String, Void, Void> deferred = new DeferredObject<String, Void, Void>();
+        final Identity stage = new Identity();
+        current.set("stage");
+        deferred.then(stage);
+        current.set("callback");
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+            }
+        });
+
+        final Object[] contexts = deferred.viewDoneCallbacks().contexts();
+        assertEquals(Arrays.<Object>asList("stage", "callback"), Arrays.asList(contexts));
+        current.set("settling");
+        deferred.resolve("ok");
+
+        assertEquals(Arrays.<Object>asList("stage"), stage.seen);
+    }
+
+    @Test
+    public void releasedStagesKeepTheirSnapshots() {
+        Contexts.setPropagator(propagator);
+        final DeferredObject<String, Void, Void> source = new DeferredObject<String, Void, Void>();
+        final DeferredObject<String, Void, Void> target = new DeferredObject<String, Void, Void>();
+        final Identity sourceStage = new Identity();
+        final Identity targetStage = new Identity();
+        current.set("source");
+        source.then(sourceStage);
+        current.set("target");
+        target.then(targetStage);
+
+        // Linking moves both stage slots back to the callback lists
+        assertTrue(source.linkTo(target));
+        final Object[] contexts = target.viewDoneCallbacks().contexts();
+        assertEquals(Arrays.<Object>asList("source", "target"), Arrays.asList(contexts));
+        current.set("settling");
+        target.resolve("ok");
+
+        assertEquals(Arrays.<Object>asList("source"), sourceStage.seen);
+        assertEquals(Arrays.<Object>asList("target"), targetStage.seen);
+    }
+
+    @Test
+    public void nothingIsCapturedWithoutAPropagator() {
+        final DeferredObject<String, Void, Void> deferred = new DeferredObject<String, Void, Void>();
+        current.set("registering");
+        deferred.then(new Identity());
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+            }
+        });
+
+        assertEquals(Arrays.<Object>asList(null, null), Arrays.asList(deferred.viewDoneCallbacks().contexts()));
+        // Set after registering, the propagator finds no snapshot to attach
+        Contexts.setPropagator(propagator);
+        deferred.resolve("ok");
+
+        assertEquals(0, captures.get());
+        assertEquals(0, attaches.get());
+    }
+
+    private static class Identity implements DoneFilter<String, String> {
+
+        final List<Object> seen = new ArrayList<Object>();
+
+        @Override
+        public String filterDone(String result) {
+            seen.add(current.get());
+            return result;
+        }
+    }
+}
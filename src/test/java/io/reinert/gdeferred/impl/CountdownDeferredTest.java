@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CountdownDeferredTest {
+
+    @Test
+    public void concurrentArrivalsNotifyADecreasingCount() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 2000;
+        final CountdownDeferred<Throwable> countdown = new CountdownDeferred<Throwable>(threads * perThread);
+        final List<Integer> notified = Collections.synchronizedList(new ArrayList<Integer>());
+        countdown.progress(new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer remaining) {
+                notified.add(remaining);
+            }
+        });
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perThread; i++) {
+                            countdown.arrive();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        finished.await();
+
+        assertEquals(Promise.State.RESOLVED, countdown.state());
+        assertEquals(0, countdown.remaining());
+        for (int i = 1; i < notified.size(); i++) {
+            assertTrue(notified.get(i) < notified.get(i - 1));
+        }
+    }
+
+    @Test
+    public void ignoresArrivalsAfterAFailure() {
+        final CountdownDeferred<String> countdown = new CountdownDeferred<String>(2);
+
+        assertTrue(countdown.abort("down"));
+        assertFalse(countdown.arrive());
+        assertFalse(countdown.abort("again"));
+        assertEquals(Promise.State.REJECTED, countdown.state());
+    }
+
+    @Test
+    public void ignoresArrivalsAfterADirectResolve() {
+        final CountdownDeferred<String> countdown = new CountdownDeferred<String>(2);
+        countdown.notify(5);
+        countdown.resolve(null);
+
+        assertFalse(countdown.arrive());
+        assertFalse(countdown.abort("late"));
+        assertEquals(0, countdown.remaining());
+        assertEquals(Promise.State.RESOLVED, countdown.state());
+    }
+
+    @Test
+    public void ignoresArrivalsAfterADirectReject() {
+        final CountdownDeferred<String> countdown = new CountdownDeferred<String>(3);
+        assertTrue(countdown.arrive());
+        countdown.reject("down");
+
+        assertFalse(countdown.arrive());
+        assertEquals(0, countdown.remaining());
+        assertEquals(Promise.State.REJECTED, countdown.state());
+    }
+
+    @Test
+    public void ignoresArrivalsAfterTheDeadline() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        Scheduler.set(scheduler);
+        try {
+            final CountdownDeferred<Object> countdown = new CountdownDeferred<Object>(2);
+            countdown.withTimeout(100);
+            scheduler.advanceBy(100);
+
+            assertFalse(countdown.arrive());
+            assertFalse(countdown.arrive());
+            assertEquals(Promise.State.REJECTED, countdown.state());
+        } finally {
+            Scheduler.set(null);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.reinert.gdeferred.AlwaysCallback;
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.Promise;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineTest {
+
+    private VirtualScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new VirtualScheduler();
+        Scheduler.set(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        Scheduler.set(null);
+    }
+
+    @Test
+    public void rejectsWhenTheDeadlinePasses() {
+        final DeferredObject<String, Object, Void> deferred = new DeferredObject<String, Object, Void>();
+        deferred.withTimeout(5000);
+
+        scheduler.advanceBy(4999);
+        assertEquals(Promise.State.PENDING, deferred.state());
+
+        scheduler.advanceBy(1);
+        assertEquals(Promise.State.REJECTED, deferred.state());
+        assertTrue(rejectedValue(deferred) instanceof DeadlineExceededException);
+    }
+
+    @Test
+    public void ignoresProducersFinishingAfterTheDeadline() {
+        final DeferredObject<String, Object, Void> deferred = new DeferredObject<String, Object, Void>();
+        deferred.withTimeout(100);
+        scheduler.advanceBy(100);
+
+        deferred.notify(null);
+        deferred.resolve("late");
+        deferred.reject("late");
+
+        assertTrue(rejectedValue(deferred) instanceof DeadlineExceededException);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void resolvingTwiceFailsEvenPastTheDeadline() {
+        final DeferredObject<String, Object, Void> deferred = new DeferredObject<String, Object, Void>();
+        deferred.withTimeout(100);
+        deferred.resolve("ok");
+        scheduler.advanceBy(200);
+
+        deferred.resolve("again");
+    }
+
+    @Test
+    public void keepsTheEarliestDeadline() {
+        final DeferredObject<String, Object, Void> deferred = new DeferredObject<String, Object, Void>();
+        deferred.withTimeout(100).withTimeout(500);
+
+        scheduler.advanceBy(100);
+
+        assertEquals(Promise.State.REJECTED, deferred.state());
+        assertEquals(100, deferred.deadline().time());
+    }
+
+    @Test
+    public void settlingDisarmsTheTimer() {
+        final DeferredObject<String, Object, Void> deferred = new DeferredObject<String, Object, Void>();
+        deferred.withTimeout(100);
+
+        deferred.resolve("ok");
+
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    public void swappingSchedulersKeepsDeadlinesOnTheirOwnScheduler() {
+        final DeferredObject<String, Object, Void> first = new DeferredObject<String, Object, Void>();
+        first.withTimeout(5000);
+
+        final VirtualScheduler other = new VirtualScheduler();
+        Scheduler.set(other);
+        final DeferredObject<String, Object, Void> second = new DeferredObject<String, Object, Void>();
+        second.withTimeout(5000);
+
+        other.advanceBy(10000);
+        assertEquals(Promise.State.REJECTED, second.state());
+        assertEquals(0, other.pending());
+        assertEquals(Promise.State.PENDING, first.state());
+
+        scheduler.advanceBy(5000);
+        assertEquals(Promise.State.REJECTED, first.state());
+    }
+
+    @Test
+    public void pipeKeepsTheDeadlineOffThePipedPromise() {
+        final DeferredObject<String, Object, Void> shared = new DeferredObject<String, Object, Void>();
+        final DeferredObject<String, Object, Void> source = new DeferredObject<String, Object, Void>();
+        source.withTimeout(100);
+        final Promise<String, Object, Void> piped = source.then(new DonePipe<String, String, Object, Void>() {
+            @Override
+            public Promise<String, Object, Void> pipeDone(String result) {
+                return shared;
+            }
+        });
+
+        source.resolve("ok");
+        scheduler.advanceBy(100);
+
+        assertTrue(rejectedValue(piped) instanceof DeadlineExceededException);
+        assertEquals(Promise.State.PENDING, shared.state());
+        assertNull(shared.deadline());
+    }
+
+    @Test
+    public void producersInsideAPipeReadTheStageDeadline() {
+        final Deadline[] seen = new Deadline[1];
+        final DeferredObject<String, Object, Void> source = new DeferredObject<String, Object, Void>();
+        source.withTimeout(100);
+        final Promise<String, Object, Void> piped = source.then(new DonePipe<String, String, Object, Void>() {
+            @Override
+            public Promise<String, Object, Void> pipeDone(String result) {
+                seen[0] = Deadline.current();
+                return new DeferredObject<String, Object, Void>().resolve(result);
+            }
+        });
+
+        source.resolve("ok");
+
+        assertEquals("ok", resolvedValue(piped));
+        assertSame(source.deadline(), seen[0]);
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void pipeLoopsGivingTheCurrentDeadlineStayLinked() {
+        final List<DeferredObject<Integer, Object, Void>> steps =
+                new ArrayList<DeferredObject<Integer, Object, Void>>();
+        final List<DeferredObject<Integer, Object, Void>> stages =
+                new ArrayList<DeferredObject<Integer, Object, Void>>();
+        final Deadline deadline = Deadline.in(1000);
+        hop(3, deadline, steps, stages);
+
+        for (int i = 0; i < 3; i++) {
+            steps.get(i).resolve(i);
+        }
+        assertEquals(4, stages.size());
+        for (DeferredObject<Integer, Object, Void> stage : stages) {
+            assertSame(stages.get(0), stage.root());
+            assertSame(deadline, stage.deadline());
+        }
+
+        steps.get(3).resolve(3);
+        assertEquals(Integer.valueOf(3), resolvedValue(stages.get(0)));
+    }
+
+    @Test
+    public void pipeKeepsAStageWithoutDeadlineUnlinked() {
+        final DeferredObject<String, Object, Void> upstream = new DeferredObject<String, Object, Void>();
+        final DeferredObject<String, Object, Void> shared = (DeferredObject<String, Object, Void>) upstream.then(
+                new DonePipe<String, String, Object, Void>() {
+                    @Override
+                    public Promise<String, Object, Void> pipeDone(String result) {
+                        return new DeferredObject<String, Object, Void>().resolve(result);
+                    }
+                });
+        final DeferredObject<String, Object, Void> source = new DeferredObject<String, Object, Void>();
+        source.withTimeout(100);
+        final Promise<String, Object, Void> piped = source.then(new DonePipe<String, String, Object, Void>() {
+            @Override
+            public Promise<String, Object, Void> pipeDone(String result) {
+                return shared;
+            }
+        });
+
+        source.resolve("ok");
+        scheduler.advanceBy(100);
+
+        assertTrue(rejectedValue(piped) instanceof DeadlineExceededException);
+        assertSame(shared, shared.root());
+        upstream.resolve("late");
+        assertEquals("late", resolvedValue(shared));
+    }
+
+    @Test
+    public void producerAndTimerSettleOnlyOnce() throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            final DeferredObject<String, Object, Void> deferred = new DeferredObject<String, Object, Void>();
+            final AtomicInteger settled = new AtomicInteger();
+            deferred.always(new AlwaysCallback<String, Object>() {
+                @Override
+                public void onAlways(Promise.State state, String resolved, Object rejected) {
+                    settled.incrementAndGet();
+                }
+            });
+            deferred.withTimeout(10);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final Throwable[] error = new Throwable[1];
+            final Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        deferred.resolve("ok");
+                    } catch (Throwable e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            producer.start();
+            start.countDown();
+            scheduler.advanceBy(10);
+            producer.join();
+
+            if (error[0] != null) fail("Producer failed: " + error[0]);
+            assertEquals(1, settled.get());
+        }
+    }
+
+    private static Promise<Integer, Object, Void> hop(final int remaining, Deadline deadline,
+                                                      final List<DeferredObject<Integer, Object, Void>> steps,
+                                                      final List<DeferredObject<Integer, Object, Void>> stages) {
+        final DeferredObject<Integer, Object, Void> step = new DeferredObject<Integer, Object, Void>();
+        step.withDeadline(deadline);
+        steps.add(step);
+        final DeferredObject<Integer, Object, Void> stage = (DeferredObject<Integer, Object, Void>) step.then(
+                new DonePipe<Integer, Integer, Object, Void>() {
+                    @Override
+                    public Promise<Integer, Object, Void> pipeDone(Integer result) {
+                        return remaining == 0 ? new DeferredObject<Integer, Object, Void>().resolve(result)
+                                : hop(remaining - 1, Deadline.current(), steps, stages);
+                    }
+                });
+        stages.add(stage);
+        return stage;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.PromiseSupplier;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HedgedPromiseTest {
+
+    private VirtualScheduler scheduler;
+    private List<DeferredObject<String, Object, Void>> attempts;
+    private List<Long> latencies;
+    private HedgePolicy policy;
+
+    @Before
+    public void setUp() {
+        scheduler = new VirtualScheduler();
+        Scheduler.set(scheduler);
+        attempts = new ArrayList<DeferredObject<String, Object, Void>>();
+        latencies = new ArrayList<Long>();
+        policy = new HedgePolicy() {
+            @Override
+            public long delay() {
+                return 100;
+            }
+
+            @Override
+            public void record(long latencyMillis) {
+                latencies.add(latencyMillis);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        Scheduler.set(null);
+    }
+
+    @Test
+    public void doesNotHedgeAFastAttempt() {
+        final HedgedPromise<String, Object, Void> promise = new HedgedPromise<String, Object, Void>(supplier(), policy);
+
+        scheduler.advanceBy(99);
+        attempts.get(0).resolve("first");
+        scheduler.advanceBy(1);
+
+        assertEquals("first", resolvedValue(promise));
+        assertEquals(1, attempts.size());
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    public void ignoresTheLosingAttempt() {
+        final HedgedPromise<String, Object, Void> promise = new HedgedPromise<String, Object, Void>(supplier(), policy);
+        scheduler.advanceBy(100);
+
+        attempts.get(0).resolve("first");
+        attempts.get(1).resolve("second");
+
+        assertEquals("first", resolvedValue(promise));
+        assertEquals(Arrays.asList(100L), latencies);
+    }
+
+    @Test
+    public void aFailedAttemptWaitsForTheOther() {
+        final HedgedPromise<String, Object, Void> promise = new HedgedPromise<String, Object, Void>(supplier(), policy);
+        scheduler.advanceBy(100);
+
+        attempts.get(0).reject("first");
+        assertEquals(Promise.State.PENDING, promise.state());
+
+        attempts.get(1).reject("second");
+        assertEquals("second", rejectedValue(promise));
+        assertTrue(latencies.isEmpty());
+    }
+
+    @Test
+    public void recordsTheLatencyOfEachAttempt() {
+        final HedgedPromise<String, Object, Void> promise = new HedgedPromise<String, Object, Void>(supplier(), policy);
+
+        scheduler.advanceBy(100);
+        assertEquals(2, attempts.size());
+
+        scheduler.advanceBy(50);
+        attempts.get(1).resolve("hedge");
+        assertEquals("hedge", resolvedValue(promise));
+        assertEquals(Arrays.asList(50L), latencies);
+
+        // The slow first attempt is still measured, so the tail is not cut at the winning time
+        scheduler.advanceBy(250);
+        attempts.get(0).resolve("first");
+        assertEquals("hedge", resolvedValue(promise));
+        assertEquals(Arrays.asList(50L, 400L), latencies);
+    }
+
+    private PromiseSupplier<String, Object, Void> supplier() {
+        return new PromiseSupplier<String, Object, Void>() {
+            @Override
+            public Promise<String, Object, Void> get() {
+                final DeferredObject<String, Object, Void> attempt = new DeferredObject<String, Object, Void>();
+                attempts.add(attempt);
+                return attempt;
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.Promise;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+
+public class IteratedPromiseTest {
+
+    @Test
+    public void loopsOverSynchronousStepsInPlace() {
+        final Promise<Integer, String, Integer> promise = Promises.forEachAsync(
+                Collections.nCopies(100000, "item").iterator(), new DonePipe<String, String, String, Void>() {
+                    @Override
+                    public Promise<String, String, Void> pipeDone(String result) {
+                        return new DeferredObject<String, String, Void>().resolve(result);
+                    }
+                });
+
+        assertEquals(Integer.valueOf(100000), resolvedValue(promise));
+    }
+
+    @Test
+    public void resumesFromPendingStepsAndStopsAtTheFirstFailure() {
+        final List<DeferredObject<String, String, Void>> steps = new ArrayList<DeferredObject<String, String, Void>>();
+        final Promise<Integer, String, Integer> promise = Promises.forEachAsync(
+                Arrays.asList("a", "b", "c").iterator(), new DonePipe<String, String, String, Void>() {
+                    @Override
+                    public Promise<String, String, Void> pipeDone(String result) {
+                        final DeferredObject<String, String, Void> step = new DeferredObject<String, String, Void>();
+                        steps.add(step);
+                        return step;
+                    }
+                });
+
+        assertEquals(1, steps.size());
+        steps.get(0).resolve("a");
+        assertEquals(2, steps.size());
+        steps.get(1).reject("b failed");
+
+        assertEquals("b failed", rejectedValue(promise));
+        assertEquals(2, steps.size());
+    }
+}
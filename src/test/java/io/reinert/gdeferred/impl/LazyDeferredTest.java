@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.Promise;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LazyDeferredTest {
+
+    @Test
+    public void runsTheTaskOnFirstSubscription() {
+        final int[] runs = new int[1];
+        final LazyDeferred<String, Object, Void> deferred = new LazyDeferred<String, Object, Void>(
+                new LazyDeferred.Task<String, Object, Void>() {
+                    @Override
+                    public void run(Deferred<String, Object, Void> deferred) {
+                        runs[0]++;
+                        deferred.resolve("ok");
+                    }
+                });
+
+        assertEquals(Promise.State.PENDING, deferred.state());
+        assertFalse(deferred.isStarted());
+        assertEquals("ok", resolvedValue(deferred));
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+            }
+        });
+        assertEquals(1, runs[0]);
+    }
+
+    @Test
+    public void rejectsWhenTheTaskThrows() {
+        final IllegalStateException error = new IllegalStateException();
+        final LazyDeferred<String, Object, Void> deferred = new LazyDeferred<String, Object, Void>(
+                new LazyDeferred.Task<String, Object, Void>() {
+                    @Override
+                    public void run(Deferred<String, Object, Void> deferred) {
+                        throw error;
+                    }
+                });
+
+        assertEquals(error, rejectedValue(deferred));
+        assertEquals(Promise.State.REJECTED, deferred.state());
+    }
+
+    @Test
+    public void settlingBeforeSubscriptionDiscardsTheTask() {
+        final LazyDeferred<String, Object, Void> deferred = new LazyDeferred<String, Object, Void>(
+                new LazyDeferred.Task<String, Object, Void>() {
+                    @Override
+                    public void run(Deferred<String, Object, Void> deferred) {
+                        deferred.resolve("from task");
+                    }
+                });
+
+        deferred.resolve("early");
+
+        assertTrue(deferred.isStarted());
+        assertEquals("early", resolvedValue(deferred));
+    }
+
+    @Test
+    public void whenStartsLazyPromises() {
+        final Promise<List<String>, Object, Integer> all = Promises.when(lazy("a"), lazy("b"), lazy("c"));
+
+        assertEquals(Arrays.asList("a", "b", "c"), resolvedValue(all));
+    }
+
+    private static LazyDeferred<String, Object, Void> lazy(final String value) {
+        return new LazyDeferred<String, Object, Void>(new LazyDeferred.Task<String, Object, Void>() {
+            @Override
+            public void run(Deferred<String, Object, Void> deferred) {
+                deferred.resolve(value);
+            }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedPromiseTest {
+
+    private final List<DeferredObject<Integer, Object, Object>> pending =
+            new ArrayList<DeferredObject<Integer, Object, Object>>();
+
+    @Test
+    public void resolvesResultsInInputOrder() {
+        final Promise<List<Integer>, Object, Integer> promise = Promises.mapAsync(Arrays.asList(1, 2, 3),
+                new DonePipe<Integer, Integer, Object, Object>() {
+                    @Override
+                    public Promise<Integer, Object, Object> pipeDone(Integer item) {
+                        return new DeferredObject<Integer, Object, Object>().resolve(item * 10);
+                    }
+                }, 2);
+
+        assertEquals(Promise.State.RESOLVED, promise.state());
+        assertEquals(Arrays.asList(10, 20, 30), resolvedValue(promise));
+    }
+
+    @Test
+    public void keepsAtMostParallelismItemsPendingAndNotifiesTheCompletedCount() {
+        final Promise<List<Integer>, Object, Integer> promise = Promises.mapAsync(Arrays.asList(1, 2, 3, 4, 5),
+                pendingItems(), 2);
+        final List<Integer> progress = new ArrayList<Integer>();
+        promise.progress(new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer completed) {
+                progress.add(completed);
+            }
+        });
+
+        assertEquals(2, pending.size());
+        pending.get(1).resolve(20);
+        assertEquals(3, pending.size());
+        pending.get(0).resolve(10);
+        pending.get(2).resolve(30);
+        assertEquals(5, pending.size());
+        pending.get(4).resolve(50);
+        pending.get(3).resolve(40);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), progress);
+        assertEquals(Arrays.asList(10, 20, 30, 40, 50), resolvedValue(promise));
+    }
+
+    @Test
+    public void stopsLaunchingOnceRejected() {
+        final Promise<List<Integer>, Object, Integer> promise = Promises.mapAsync(Arrays.asList(1, 2, 3, 4),
+                pendingItems(), 2);
+
+        pending.get(0).reject("down");
+        pending.get(1).resolve(2);
+
+        assertEquals("down", rejectedValue(promise));
+        assertEquals(2, pending.size());
+    }
+
+    @Test
+    public void rejectsWhenTheFunctionThrows() {
+        final IllegalStateException error = new IllegalStateException();
+        final Promise<List<Integer>, Object, Integer> promise = Promises.mapAsync(Arrays.asList(1, 2, 3),
+                new DonePipe<Integer, Integer, Object, Object>() {
+                    @Override
+                    public Promise<Integer, Object, Object> pipeDone(Integer item) {
+                        if (item == 2) throw error;
+                        return new DeferredObject<Integer, Object, Object>().resolve(item);
+                    }
+                }, 1);
+
+        assertEquals(Promise.State.REJECTED, promise.state());
+        assertEquals(error, rejectedValue(promise));
+    }
+
+    @Test
+    public void rejectsWhenTheFunctionReturnsNull() {
+        final Promise<List<Integer>, Object, Integer> promise = Promises.mapAsync(Arrays.asList(1, 2),
+                new DonePipe<Integer, Integer, Object, Object>() {
+                    @Override
+                    public Promise<Integer, Object, Object> pipeDone(Integer item) {
+                        return null;
+                    }
+                }, 2);
+
+        assertEquals(Promise.State.REJECTED, promise.state());
+        assertTrue(rejectedValue(promise) instanceof NullPointerException);
+    }
+
+    private DonePipe<Integer, Integer, Object, Object> pendingItems() {
+        return new DonePipe<Integer, Integer, Object, Object>() {
+            @Override
+            public Promise<Integer, Object, Object> pipeDone(Integer item) {
+                final DeferredObject<Integer, Object, Object> deferred = new DeferredObject<Integer, Object, Object>();
+                pending.add(deferred);
+                return deferred;
+            }
+        };
+    }
+}
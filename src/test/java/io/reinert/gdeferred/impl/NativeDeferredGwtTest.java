@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.junit.client.GWTTestCase;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.context.ContextPropagator;
+import io.reinert.gdeferred.context.Contexts;
+
+/**
+ * Runs in HtmlUnit, which may lack a native {@code Promise}; each test checks the fallback when so.
+ */
+public class NativeDeferredGwtTest extends GWTTestCase {
+
+    private static final int TIMEOUT = 1000;
+
+    private static Object current;
+
+    @Override
+    public String getModuleName() {
+        return "io.reinert.gdeferred.GDeferredTest";
+    }
+
+    @Override
+    protected void gwtTearDown() throws Exception {
+        Contexts.setPropagator(null);
+        current = null;
+    }
+
+    public void testDoneCallbackRunsAsMicrotask() {
+        final NativeDeferred<String, Void, Void> deferred = new NativeDeferred<String, Void, Void>();
+        final List<String> calls = new ArrayList<String>();
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                calls.add(result);
+                if (NativeDeferred.isSupported()) finishTest();
+            }
+        });
+
+        deferred.resolve("ok");
+
+        if (NativeDeferred.isSupported()) {
+            assertTrue(calls.isEmpty());
+            delayTestFinish(TIMEOUT);
+        } else {
+            assertEquals(Arrays.asList("ok"), calls);
+        }
+    }
+
+    public void testMicrotaskRunsInTheRegisteringContext() {
+        Contexts.setPropagator(new ContextPropagator() {
+            @Override
+            public Object capture() {
+                return current;
+            }
+
+            @Override
+            public Object attach(Object snapshot) {
+                final Object previous = current;
+                current = snapshot;
+                return previous;
+            }
+
+            @Override
+            public void restore(Object previous) {
+                current = previous;
+            }
+        });
+        final NativeDeferred<String, Void, Void> deferred = new NativeDeferred<String, Void, Void>();
+
+        current = "registering";
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                assertEquals("registering", current);
+                if (NativeDeferred.isSupported()) finishTest();
+            }
+        });
+        current = "resolving";
+        deferred.resolve("ok");
+
+        assertEquals("resolving", current);
+        if (NativeDeferred.isSupported()) delayTestFinish(TIMEOUT);
+    }
+
+    public void testWrapFollowsTheNativePromise() {
+        if (!NativeDeferred.isSupported()) return;
+
+        NativeDeferred.<String, Void>wrap(resolvedNative("ok")).done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                assertEquals("ok", result);
+                finishTest();
+            }
+        });
+        delayTestFinish(TIMEOUT);
+    }
+
+    public void testToNativeSettlesWithTheDeferred() {
+        if (!NativeDeferred.isSupported()) return;
+
+        final NativeDeferred<String, Void, Void> deferred = new NativeDeferred<String, Void, Void>();
+        NativeDeferred.<String, Void>wrap(deferred.toNative()).done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                assertEquals("ok", result);
+                finishTest();
+            }
+        });
+        deferred.resolve("ok");
+        delayTestFinish(TIMEOUT);
+    }
+
+    private static native JavaScriptObject resolvedNative(Object value) /*-{
+        return $wnd.Promise.resolve(value);
+    }-*/;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import org.junit.Test;
+
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class NativeDeferredTest {
+
+    @Test
+    public void dispatchesSynchronouslyInTheJvm() {
+        final NativeDeferred<String, Void, Void> deferred = new NativeDeferred<String, Void, Void>();
+        deferred.resolve("ok");
+
+        assertFalse(NativeDeferred.isSupported());
+        assertEquals("ok", resolvedValue(deferred));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void wrapIsNotSupportedInTheJvm() {
+        NativeDeferred.wrap(null);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void toNativeIsNotSupportedInTheJvm() {
+        new NativeDeferred<String, Void, Void>().toNative();
+    }
+}
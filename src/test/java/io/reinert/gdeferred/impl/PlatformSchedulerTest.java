@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class PlatformSchedulerTest {
+
+    @Test(timeout = 5000)
+    public void keepsRunningTasksAfterOneThrows() throws InterruptedException {
+        final PlatformScheduler scheduler = new PlatformScheduler();
+        final CountDownLatch ran = new CountDownLatch(1);
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("task failure");
+            }
+        }, 0);
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }, 10);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+    }
+}
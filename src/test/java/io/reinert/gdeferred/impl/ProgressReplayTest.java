@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.ProgressCallback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProgressReplayTest {
+
+    @Test
+    public void replaysTheLatestProgressByDefault() {
+        final DeferredObject<String, Void, Integer> deferred = new DeferredObject<String, Void, Integer>();
+        deferred.notify(1);
+        deferred.notify(2);
+
+        assertEquals(Arrays.asList(2), progressOf(deferred));
+    }
+
+    @Test
+    public void replaysOnlyTheNewestValuesInOrder() {
+        final DeferredObject<String, Void, Integer> deferred = new DeferredObject<String, Void, Integer>(3);
+        assertEquals(Arrays.<Integer>asList(), progressOf(deferred));
+
+        deferred.notify(0);
+        deferred.notify(1);
+        assertEquals(Arrays.asList(0, 1), progressOf(deferred));
+
+        for (int i = 2; i < 10; i++) {
+            deferred.notify(i);
+        }
+        assertEquals(Arrays.asList(7, 8, 9), progressOf(deferred));
+    }
+
+    @Test
+    public void replaysToLateCallbacksAfterSettling() {
+        final DeferredObject<String, Void, Integer> deferred = new DeferredObject<String, Void, Integer>(2);
+        deferred.notify(1);
+        deferred.notify(2);
+        deferred.resolve("done");
+
+        assertEquals(Arrays.asList(1, 2), progressOf(deferred));
+    }
+
+    @Test
+    public void zeroDisablesTheReplay() {
+        final DeferredObject<String, Void, Integer> deferred = new DeferredObject<String, Void, Integer>(0);
+        deferred.notify(1);
+
+        assertTrue(progressOf(deferred).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANegativeReplay() {
+        new DeferredObject<String, Void, Integer>(-1);
+    }
+
+    private static List<Integer> progressOf(DeferredObject<String, Void, Integer> deferred) {
+        final List<Integer> progress = new ArrayList<Integer>();
+        deferred.progress(new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer value) {
+                progress.add(value);
+            }
+        });
+        return progress;
+    }
+}
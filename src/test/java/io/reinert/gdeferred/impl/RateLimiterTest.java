@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.reinert.gdeferred.Promise;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private VirtualScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new VirtualScheduler();
+        Scheduler.set(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        Scheduler.set(null);
+    }
+
+    @Test
+    public void releasesWaitersAsTokensRefill() {
+        final RateLimiter limiter = new RateLimiter(10, 2, 2);
+        assertEquals(Promise.State.RESOLVED, limiter.acquire().state());
+        assertEquals(Promise.State.RESOLVED, limiter.acquire().state());
+
+        final Promise<Void, Throwable, Void> third = limiter.acquire();
+        final Promise<Void, Throwable, Void> fourth = limiter.acquire();
+        assertTrue(rejectedValue(limiter.acquire()) instanceof RateLimitExceededException);
+        assertFalse(limiter.tryAcquire());
+
+        scheduler.advanceBy(99);
+        assertEquals(Promise.State.PENDING, third.state());
+
+        scheduler.advanceBy(1);
+        assertEquals(Promise.State.RESOLVED, third.state());
+        assertEquals(Promise.State.PENDING, fourth.state());
+
+        scheduler.advanceBy(100);
+        assertEquals(Promise.State.RESOLVED, fourth.state());
+        assertEquals(0, limiter.waiting());
+    }
+
+    @Test
+    public void skipsWaitersNoLongerPending() {
+        final RateLimiter limiter = new RateLimiter(10, 1, 2);
+        limiter.acquire();
+        final DeferredObject<Void, Throwable, Void> expiring = (DeferredObject<Void, Throwable, Void>) limiter.acquire();
+        expiring.withTimeout(50);
+        final Promise<Void, Throwable, Void> next = limiter.acquire();
+
+        scheduler.advanceBy(50);
+        assertEquals(Promise.State.REJECTED, expiring.state());
+
+        scheduler.advanceBy(50);
+        assertEquals(Promise.State.RESOLVED, next.state());
+        assertEquals(0, limiter.waiting());
+    }
+
+    @Test
+    public void refillsUpToTheBurst() {
+        final RateLimiter limiter = new RateLimiter(10, 2, 0);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+
+        scheduler.advanceBy(1000);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+}
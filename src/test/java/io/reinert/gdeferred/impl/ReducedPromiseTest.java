@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.Accumulator;
+import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+
+public class ReducedPromiseTest {
+
+    private static final Accumulator<String, String> CONCAT = new Accumulator<String, String>() {
+        @Override
+        public String accumulate(String accumulated, String item) {
+            return accumulated + item;
+        }
+    };
+
+    @Test
+    public void foldsTheResultsInSettlementOrder() {
+        final List<Deferred<String, Object, Void>> inputs = deferreds(3);
+        final Promise<String, Object, Integer> reduced = Promises.reduce(inputs, ">", CONCAT);
+        final List<Integer> progress = progressOf(reduced);
+
+        inputs.get(2).resolve("c");
+        inputs.get(0).resolve("a");
+        assertEquals(Promise.State.PENDING, reduced.state());
+
+        inputs.get(1).resolve("b");
+        assertEquals(">cab", resolvedValue(reduced));
+        assertEquals(Arrays.asList(1, 2, 3), progress);
+    }
+
+    @Test
+    public void foldsSettledInputsInInputOrder() {
+        final List<Deferred<String, Object, Void>> inputs = deferreds(2);
+        inputs.get(1).resolve("b");
+        inputs.get(0).resolve("a");
+
+        assertEquals("ab", resolvedValue(Promises.reduce(inputs, "", CONCAT)));
+    }
+
+    @Test
+    public void stopsFoldingOnTheFirstRejection() {
+        final List<Deferred<String, Object, Void>> inputs = deferreds(3);
+        final List<String> folded = new ArrayList<String>();
+        final Promise<String, Object, Integer> reduced = Promises.reduce(inputs, "",
+                new Accumulator<String, String>() {
+                    @Override
+                    public String accumulate(String accumulated, String item) {
+                        folded.add(item);
+                        return accumulated + item;
+                    }
+                });
+
+        inputs.get(0).resolve("a");
+        inputs.get(1).reject("boom");
+        inputs.get(2).resolve("c");
+
+        assertEquals("boom", rejectedValue(reduced));
+        assertEquals(Arrays.asList("a"), folded);
+    }
+
+    @Test
+    public void resolvesWithTheSeedWhenThereAreNoInputs() {
+        final List<Promise<String, Object, Void>> inputs = Collections.emptyList();
+
+        assertEquals("seed", resolvedValue(Promises.reduce(inputs, "seed", CONCAT)));
+    }
+
+    @Test
+    public void rejectsWithTheExceptionThrownByTheAccumulator() {
+        final IllegalStateException error = new IllegalStateException();
+        final List<Deferred<String, Object, Void>> inputs = deferreds(2);
+        final Promise<String, Object, Integer> reduced = Promises.reduce(inputs, "",
+                new Accumulator<String, String>() {
+                    @Override
+                    public String accumulate(String accumulated, String item) {
+                        throw error;
+                    }
+                });
+
+        inputs.get(0).resolve("a");
+        inputs.get(1).resolve("b");
+
+        assertEquals(error, rejectedValue(reduced));
+    }
+
+    private static List<Deferred<String, Object, Void>> deferreds(int count) {
+        final List<Deferred<String, Object, Void>> deferreds = new ArrayList<Deferred<String, Object, Void>>();
+        for (int i = 0; i < count; i++) {
+            deferreds.add(new DeferredObject<String, Object, Void>());
+        }
+        return deferreds;
+    }
+
+    private static List<Integer> progressOf(Promise<?, ?, Integer> promise) {
+        final List<Integer> progress = new ArrayList<Integer>();
+        promise.progress(new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer value) {
+                progress.add(value);
+            }
+        });
+        return progress;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.FailCallback;
+import io.reinert.gdeferred.Promise;
+
+/**
+ * Reads the value of a settled promise synchronously.
+ */
+final class SettledValues {
+
+    private SettledValues() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <D> D resolvedValue(Promise<D, ?, ?> promise) {
+        final Object[] value = new Object[1];
+        promise.done(new DoneCallback<D>() {
+            @Override
+            public void onDone(D result) {
+                value[0] = result;
+            }
+        });
+        return (D) value[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    static <F> F rejectedValue(Promise<?, F, ?> promise) {
+        final Object[] value = new Object[1];
+        promise.fail(new FailCallback<F>() {
+            @Override
+            public void onFail(F result) {
+                value[0] = result;
+            }
+        });
+        return (F) value[0];
+    }
+}
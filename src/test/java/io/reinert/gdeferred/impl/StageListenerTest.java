@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.Deferred;
+import io.reinert.gdeferred.DoneCallback;
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.Promise;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+
+public class StageListenerTest {
+
+    private static final DoneFilter<String, Integer> LENGTH = new DoneFilter<String, Integer>() {
+        @Override
+        public Integer filterDone(String result) {
+            return result.length();
+        }
+    };
+
+    @Test
+    public void stagesIgnoreDoneOverrides() {
+        final List<String> wrapped = new ArrayList<String>();
+        final DeferredObject<String, String, Void> deferred = new DeferredObject<String, String, Void>() {
+            @Override
+            public Promise<String, String, Void> done(final DoneCallback<String> callback) {
+                return super.done(new DoneCallback<String>() {
+                    @Override
+                    public void onDone(String result) {
+                        wrapped.add(result);
+                        callback.onDone(result);
+                    }
+                });
+            }
+        };
+
+        final Promise<Integer, String, Void> stage = deferred.then(LENGTH);
+        deferred.reject("down");
+
+        assertEquals("down", rejectedValue(stage));
+        assertEquals(0, wrapped.size());
+    }
+
+    @Test
+    public void stagesStartLazyDeferreds() {
+        final LazyDeferred<String, String, Void> lazy = new LazyDeferred<String, String, Void>(
+                new LazyDeferred.Task<String, String, Void>() {
+                    @Override
+                    public void run(Deferred<String, String, Void> deferred) {
+                        deferred.resolve("started");
+                    }
+                });
+
+        assertEquals(Integer.valueOf(7), resolvedValue(lazy.then(LENGTH)));
+    }
+
+    @Test
+    public void theStageSlotIsDispatchedBeforeLaterCallbacks() {
+        final DeferredObject<String, String, Void> deferred = new DeferredObject<String, String, Void>();
+        final List<Object> order = new ArrayList<Object>();
+        final Promise<Integer, String, Void> stage = deferred.then(LENGTH);
+        stage.done(new DoneCallback<Integer>() {
+            @Override
+            public void onDone(Integer result) {
+                order.add(result);
+            }
+        });
+        deferred.done(new DoneCallback<String>() {
+            @Override
+            public void onDone(String result) {
+                order.add(result);
+            }
+        });
+
+        deferred.resolve("ok");
+
+        assertEquals(Arrays.<Object>asList(2, "ok"), order);
+    }
+}
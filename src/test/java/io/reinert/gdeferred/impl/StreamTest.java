@@ -0,0 +1,310 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.Accumulator;
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.ProgressCallback;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.StreamCallback;
+import io.reinert.gdeferred.StreamSubscription;
+
+import static io.reinert.gdeferred.impl.SettledValues.rejectedValue;
+import static io.reinert.gdeferred.impl.SettledValues.resolvedValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamTest {
+
+    private final List<Object> events = new ArrayList<Object>();
+
+    @Test
+    public void deliversOnlyTheRequestedItems() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>(4);
+        final StreamSubscription subscription = stream.subscribe(recorder());
+        stream.emit("a");
+        stream.emit("b");
+        stream.emit("c");
+        assertTrue(events.isEmpty());
+
+        subscription.request(2);
+        assertEquals(Arrays.<Object>asList("a", "b"), events);
+        assertEquals(0, stream.demand());
+
+        subscription.request(5);
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), events);
+        assertEquals(4, stream.demand());
+    }
+
+    @Test
+    public void signalsDemandToTheProducer() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>(0);
+        stream.onDemand(new Runnable() {
+            @Override
+            public void run() {
+                while (stream.demand() > 0) {
+                    stream.emit("item " + events.size());
+                }
+            }
+        });
+
+        stream.subscribe(recorder()).request(3);
+
+        assertEquals(Arrays.<Object>asList("item 0", "item 1", "item 2"), events);
+        assertEquals(0, stream.demand());
+    }
+
+    @Test
+    public void refusesItemsOnceTheBufferIsFull() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>(2);
+
+        assertTrue(stream.emit("a"));
+        assertTrue(stream.emit("b"));
+        assertFalse(stream.emit("c"));
+
+        stream.subscribe(recorder()).request(3);
+        assertEquals(Arrays.<Object>asList("a", "b"), events);
+        assertTrue(stream.emit("d"));
+        assertEquals(Arrays.<Object>asList("a", "b", "d"), events);
+    }
+
+    @Test
+    public void completesAfterTheBufferedItems() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>(4);
+        stream.emit("a");
+        stream.emit("b");
+        stream.complete();
+
+        final StreamSubscription subscription = stream.subscribe(recorder());
+        subscription.request(1);
+        assertEquals(Arrays.<Object>asList("a"), events);
+
+        subscription.request(1);
+        assertEquals(Arrays.<Object>asList("a", "b", "complete"), events);
+    }
+
+    @Test
+    public void failsWithoutDeliveringTheBufferedItems() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>(4);
+        final StreamSubscription subscription = stream.subscribe(recorder());
+        stream.emit("a");
+        stream.reject("boom");
+        subscription.request(1);
+
+        assertEquals(Arrays.<Object>asList("fail boom"), events);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotEmitAfterCompleting() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>();
+        stream.complete();
+        stream.emit("a");
+    }
+
+    @Test
+    public void cancelDiscardsTheBufferAndRefusesNewItems() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>(4);
+        final StreamSubscription subscription = stream.subscribe(recorder());
+        stream.emit("a");
+        stream.emit("b");
+        subscription.request(1);
+        subscription.cancel();
+        subscription.request(1);
+
+        assertFalse(stream.emit("c"));
+        assertEquals(Arrays.<Object>asList("a"), events);
+    }
+
+    @Test
+    public void keepsDeliveringWhenTheSubscriberThrows() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>(4);
+        stream.subscribe(new StreamCallback<String, Object>() {
+            @Override
+            public void onItem(String item) {
+                events.add(item);
+                if (item.equals("a")) throw new IllegalStateException();
+            }
+
+            @Override
+            public void onComplete() {
+                events.add("complete");
+            }
+
+            @Override
+            public void onFail(Object reason) {
+                events.add("fail " + reason);
+            }
+        }).request(2);
+
+        assertTrue(stream.emit("a"));
+        assertTrue(stream.emit("b"));
+        stream.complete();
+
+        assertEquals(Arrays.<Object>asList("a", "b", "complete"), events);
+        assertEquals(0, stream.demand());
+    }
+
+    @Test
+    public void mapsAndFiltersTheItems() {
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>();
+        stream.map(new DoneFilter<String, Integer>() {
+            @Override
+            public Integer filterDone(String result) {
+                return result.length();
+            }
+        }).filter(new DoneFilter<Integer, Boolean>() {
+            @Override
+            public Boolean filterDone(Integer result) {
+                return result % 2 == 0;
+            }
+        }).subscribe(this.<Integer>typedRecorder()).request(2);
+
+        stream.emit("a");
+        stream.emit("bb");
+        stream.emit("ccc");
+        stream.emit("dddd");
+        stream.emit("eeeeee");
+        stream.complete();
+
+        assertEquals(Arrays.<Object>asList(2, 4), events);
+        assertEquals(0, stream.demand());
+    }
+
+    @Test
+    public void failsTheMappedStreamWhenTheFilterThrows() {
+        final IllegalStateException error = new IllegalStateException();
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>();
+        stream.map(new DoneFilter<String, String>() {
+            @Override
+            public String filterDone(String result) {
+                if (result.equals("b")) throw error;
+                return result;
+            }
+        }).subscribe(recorder()).request(5);
+
+        stream.emit("a");
+        stream.emit("b");
+
+        assertFalse(stream.emit("c"));
+        assertEquals(Arrays.<Object>asList("a", "fail " + error), events);
+    }
+
+    @Test
+    public void failsTheFilteredStreamWhenThePredicateThrows() {
+        final IllegalStateException error = new IllegalStateException();
+        final DeferredStreamObject<String, Object> stream = new DeferredStreamObject<String, Object>();
+        stream.filter(new DoneFilter<String, Boolean>() {
+            @Override
+            public Boolean filterDone(String result) {
+                throw error;
+            }
+        }).subscribe(recorder()).request(5);
+
+        stream.emit("a");
+
+        assertFalse(stream.emit("b"));
+        assertEquals(Arrays.<Object>asList("fail " + error), events);
+    }
+
+    @Test
+    public void foldsTheItemsAndNotifiesTheCountPerBatch() {
+        final DeferredStreamObject<Integer, Object> stream = new DeferredStreamObject<Integer, Object>();
+        final Promise<Long, Object, Long> sum = stream.fold(0L, new Accumulator<Long, Integer>() {
+            @Override
+            public Long accumulate(Long accumulated, Integer item) {
+                return accumulated + item;
+            }
+        });
+        sum.progress(new ProgressCallback<Long>() {
+            @Override
+            public void onProgress(Long progress) {
+                events.add(progress);
+            }
+        });
+
+        final int items = 2 * FoldedPromise.BATCH_SIZE + 1;
+        for (int i = 1; i <= items; i++) {
+            assertTrue(stream.emit(i));
+        }
+        stream.complete();
+
+        assertEquals((long) items * (items + 1) / 2, (long) resolvedValue(sum));
+        assertEquals(Arrays.<Object>asList((long) FoldedPromise.BATCH_SIZE, 2L * FoldedPromise.BATCH_SIZE), events);
+    }
+
+    @Test
+    public void rejectsTheFoldWhenTheAccumulatorThrows() {
+        final IllegalStateException error = new IllegalStateException();
+        final DeferredStreamObject<Integer, Object> stream = new DeferredStreamObject<Integer, Object>();
+        final Promise<Integer, Object, Long> fold = stream.fold(0, new Accumulator<Integer, Integer>() {
+            @Override
+            public Integer accumulate(Integer accumulated, Integer item) {
+                throw error;
+            }
+        });
+
+        stream.emit(1);
+
+        assertEquals(error, rejectedValue(fold));
+        assertFalse(stream.emit(2));
+    }
+
+    @Test
+    public void rejectsTheFoldWhenTheStreamFails() {
+        final DeferredStreamObject<Integer, Object> stream = new DeferredStreamObject<Integer, Object>();
+        final Promise<Integer, Object, Long> fold = stream.fold(0, new Accumulator<Integer, Integer>() {
+            @Override
+            public Integer accumulate(Integer accumulated, Integer item) {
+                return accumulated + item;
+            }
+        });
+
+        stream.emit(1);
+        stream.reject("boom");
+
+        assertEquals("boom", rejectedValue(fold));
+    }
+
+    private StreamCallback<String, Object> recorder() {
+        return typedRecorder();
+    }
+
+    private <T> StreamCallback<T, Object> typedRecorder() {
+        return new StreamCallback<T, Object>() {
+            @Override
+            public void onItem(T item) {
+                events.add(item);
+            }
+
+            @Override
+            public void onComplete() {
+                events.add("complete");
+            }
+
+            @Override
+            public void onFail(Object reason) {
+                events.add("fail " + reason);
+            }
+        };
+    }
+}
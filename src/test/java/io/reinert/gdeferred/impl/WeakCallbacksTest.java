@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.reinert.gdeferred.ProgressCallback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WeakCallbacksTest {
+
+    private final List<String> calls = new ArrayList<String>();
+
+    @Test
+    public void prunesCollectedCallbacksOnTheNextDispatch() throws InterruptedException {
+        final DeferredObject<String, Void, Integer> deferred = new DeferredObject<String, Void, Integer>();
+        final WeakReference<ProgressCallback<Integer>> collected = subscribeDiscarded(deferred);
+        final ProgressCallback<Integer> live = recorder("live");
+        WeakCallbacks.progress(deferred, live);
+        assertEquals(2, deferred.viewProgressCallbacks().size());
+
+        for (int i = 0; i < 50 && collected.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(collected.get());
+
+        deferred.notify(1);
+        assertEquals(1, deferred.viewProgressCallbacks().size());
+        deferred.notify(2);
+
+        assertEquals(Arrays.asList("live 1", "live 2"), calls);
+        assertEquals(1, deferred.viewProgressCallbacks().toArray().length);
+        // Keeps the live callback reachable up to here
+        assertEquals("live", live.toString());
+    }
+
+    private WeakReference<ProgressCallback<Integer>> subscribeDiscarded(DeferredObject<?, ?, Integer> deferred) {
+        final ProgressCallback<Integer> callback = recorder("discarded");
+        WeakCallbacks.progress(deferred, callback);
+        return new WeakReference<ProgressCallback<Integer>>(callback);
+    }
+
+    private ProgressCallback<Integer> recorder(final String name) {
+        return new ProgressCallback<Integer>() {
+            @Override
+            public void onProgress(Integer progress) {
+                calls.add(name + " " + progress);
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 Danilo Reinert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reinert.gdeferred.trace;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.reinert.gdeferred.DoneFilter;
+import io.reinert.gdeferred.DonePipe;
+import io.reinert.gdeferred.Promise;
+import io.reinert.gdeferred.impl.DeferredObject;
+import io.reinert.gdeferred.impl.Scheduler;
+import io.reinert.gdeferred.impl.VirtualScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TracingTest {
+
+    private VirtualScheduler scheduler;
+    private InMemoryTracer tracer;
+
+    @Before
+    public void setUp() {
+        scheduler = new VirtualScheduler();
+        Scheduler.set(scheduler);
+        tracer = new InMemoryTracer();
+        Tracing.setTracer(tracer);
+    }
+
+    @After
+    public void tearDown() {
+        Tracing.setTracer(null);
+        Scheduler.set(null);
+    }
+
+    @Test
+    public void recordsTheEventsOfEachStage() {
+        final DeferredObject<String, Object, Void> source = new DeferredObject<String, Object, Void>();
+        final DeferredObject<String, Object, Void> inner = new DeferredObject<String, Object, Void>();
+        source.then(new DoneFilter<String, String>() {
+            @Override
+            public String filterDone(String result) {
+                scheduler.advanceBy(5);
+                return result;
+            }
+        }).then(new DonePipe<String, String, Object, Void>() {
+            @Override
+            public Promise<String, Object, Void> pipeDone(String result) {
+                return inner;
+            }
+        });
+
+        scheduler.advanceBy(10);
+        source.resolve("ok");
+        scheduler.advanceBy(20);
+        inner.resolve("done");
+
+        final List<InMemoryTracer.RecordedSpan> spans = tracer.getSpans();
+        assertEquals(2, spans.size());
+
+        final InMemoryTracer.RecordedSpan filter = spans.get(0);
+        assertEquals("filter", filter.getKind());
+        assertEquals(0, filter.getCreatedAt());
+        assertEquals(10, filter.getUpstreamSettledAt());
+        assertEquals(5, filter.getExecutionTime());
+        assertEquals(15, filter.getSettledAt());
+        assertEquals(Promise.State.RESOLVED, filter.getState());
+
+        final InMemoryTracer.RecordedSpan pipe = spans.get(1);
+        assertEquals("pipe", pipe.getKind());
+        assertEquals(15, pipe.getUpstreamSettledAt());
+        assertEquals(0, pipe.getExecutionTime());
+        assertEquals(35, pipe.getSettledAt());
+        assertNull(pipe.getError());
+    }
+
+    @Test
+    public void namesTheStage() {
+        final DeferredObject<String, Object, Void> source = new DeferredObject<String, Object, Void>();
+        final Promise<String, Object, Void> stage = source.then(new DoneFilter<String, String>() {
+            @Override
+            public String filterDone(String result) {
+                return result;
+            }
+        });
+
+        assertSame(stage, Tracing.name(stage, "load-user"));
+        source.resolve("ok");
+
+        assertEquals("load-user", tracer.getSpans().get(0).getName());
+        assertEquals("filter", tracer.getSpans().get(0).getKind());
+    }
+
+    @Test
+    public void tracesNothingWhenOff() {
+        Tracing.setTracer(null);
+        final DeferredObject<String, Object, Void> source = new DeferredObject<String, Object, Void>();
+        Tracing.name(source.then(new DoneFilter<String, String>() {
+            @Override
+            public String filterDone(String result) {
+                return result;
+            }
+        }), "ignored");
+
+        source.resolve("ok");
+
+        assertNull(Tracing.startSpan("filter"));
+        assertTrue(tracer.getSpans().isEmpty());
+    }
+
+    @Test
+    public void recordsTheExceptionThrownByAFilterOrPipe() {
+        final IllegalStateException error = new IllegalStateException();
+        final DeferredObject<String, Object, Void> source = new DeferredObject<String, Object, Void>();
+        final Promise<String, Object, Void> filtered = source.then(new DoneFilter<String, String>() {
+            @Override
+            public String filterDone(String result) {
+                throw error;
+            }
+        });
+        final Promise<String, Object, Void> piped = source.then(new DonePipe<String, String, Object, Void>() {
+            @Override
+            public Promise<String, Object, Void> pipeDone(String result) {
+                throw error;
+            }
+        });
+
+        source.resolve("ok");
+
+        assertEquals(Promise.State.PENDING, filtered.state());
+        assertEquals(Promise.State.PENDING, piped.state());
+        final List<InMemoryTracer.RecordedSpan> spans = tracer.getSpans();
+        assertEquals(2, spans.size());
+        for (InMemoryTracer.RecordedSpan span : spans) {
+            assertSame(error, span.getError());
+            assertEquals(-1, span.getExecutedAt());
+            assertNull(span.getState());
+        }
+    }
+
+    @Test
+    public void settlesEveryStageOfAPipeLoop() {
+        final DeferredObject<Integer, Object, Void> last = new DeferredObject<Integer, Object, Void>();
+        final Promise<Integer, Object, Void> loop = hop(3, last);
+
+        last.resolve(0);
+
+        assertEquals(Promise.State.RESOLVED, loop.state());
+        // Linked stages would never settle their own span
+        final List<InMemoryTracer.RecordedSpan> spans = tracer.getSpans();
+        assertEquals(4, spans.size());
+        for (InMemoryTracer.RecordedSpan span : spans) {
+            assertEquals(Promise.State.RESOLVED, span.getState());
+        }
+    }
+
+    private static Promise<Integer, Object, Void> hop(final int remaining,
+                                                      final DeferredObject<Integer, Object, Void> last) {
+        return new DeferredObject<Integer, Object, Void>().resolve(remaining)
+                .then(new DonePipe<Integer, Integer, Object, Void>() {
+                    @Override
+                    public Promise<Integer, Object, Void> pipeDone(Integer result) {
+                        return result == 0 ? last : hop(result - 1, last);
+                    }
+                });
+    }
+}